@@ -0,0 +1,111 @@
+package com.zyu.ijkplayer;
+
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import tv.danmaku.ijk.media.player.misc.IMediaDataSource;
+
+/**
+ * 未压缩的 asset 通过 AssetFileDescriptor 在 apk 内做定位读，
+ * 压缩存储的 asset 退化为 {@link ChunkedStreamMediaDataSource}
+ */
+class AssetMediaDataSource implements IMediaDataSource {
+    private AssetFileDescriptor mFd;
+    private FileInputStream mStream;
+    // close() 可能与 ijk 读线程并发，读取时先取到局部变量再判空
+    private volatile FileChannel mChannel;
+    private final long mStartOffset;
+    private final long mLength;
+
+    /**
+     * @param spillDir 压缩 asset 解压后的临时文件目录，为 null 时回退读取需要从头解压
+     */
+    static IMediaDataSource open(final AssetManager assetManager, final String path, File spillDir) throws IOException {
+        AssetFileDescriptor fd = null;
+        try {
+            fd = assetManager.openFd(path);
+        } catch (FileNotFoundException e) {
+            // openFd 只支持 apk 中未压缩存储的文件
+            Log.i("DataSource", "asset is compressed, use chunk cache: " + path);
+        }
+        if (fd != null) {
+            return new AssetMediaDataSource(fd);
+        }
+        return new ChunkedStreamMediaDataSource(new ChunkedStreamMediaDataSource.StreamOpener() {
+            @Override
+            public InputStream open() throws IOException {
+                return assetManager.open(path, AssetManager.ACCESS_STREAMING);
+            }
+        }, spillDir);
+    }
+
+    private AssetMediaDataSource(AssetFileDescriptor fd) {
+        mFd = fd;
+        mStream = new FileInputStream(fd.getFileDescriptor());
+        mChannel = mStream.getChannel();
+        mStartOffset = fd.getStartOffset();
+        long length = fd.getLength();
+        if (length == AssetFileDescriptor.UNKNOWN_LENGTH) {
+            try {
+                length = mChannel.size() - mStartOffset;
+            } catch (IOException e) {
+                Log.e("DataSource", "failed to get size" + e.getMessage());
+                length = -1;
+            }
+        }
+        mLength = length;
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) {
+        if (size <= 0)
+            return size;
+        FileChannel channel = mChannel;
+        if (channel == null || (mLength >= 0 && position >= mLength))
+            return -1;
+        if (mLength >= 0)
+            size = (int) Math.min(size, mLength - position);
+        int length = -1;
+        try {
+            length = channel.read(ByteBuffer.wrap(buffer, offset, size), mStartOffset + position);
+        } catch (IOException e) {
+            Log.e("DataSource", "failed to read" + e.getMessage());
+        }
+        return length;
+    }
+
+    @Override
+    public long getSize() {
+        return mLength;
+    }
+
+    @Override
+    public void close() {
+        AssetFileDescriptor fd;
+        FileInputStream stream;
+        synchronized (this) {
+            fd = mFd;
+            stream = mStream;
+            mChannel = null;
+            mStream = null;
+            mFd = null;
+        }
+        if (fd != null) {
+            try {
+                stream.close();
+                fd.close();
+            } catch (IOException e) {
+                Log.e("DataSource", "failed to close" + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.zyu.ijkplayer;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tv.danmaku.ijk.media.player.misc.IMediaDataSource;
+
+/**
+ * 套在任意 IMediaDataSource 外面的定长块 LRU 缓存，
+ * 后台线程按顺序预读后续的块，moov、索引表和循环播放的重复读取直接命中内存
+ */
+class BlockCacheMediaDataSource implements IMediaDataSource {
+    private static final String TAG = "BlockCache";
+
+    final static int DEFAULT_BLOCK_SIZE = 64 * 1024;
+    final static int DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+    final static int DEFAULT_READ_AHEAD = 4;
+
+    private final IMediaDataSource mSource;
+    private final int mBlockSize;
+    private final int mMaxBlocks;
+    private final int mReadAhead;
+    private final long mSize;
+
+    // 访问顺序的 LinkedHashMap 即 LRU
+    private final LinkedHashMap<Long, byte[]> mBlocks;
+    // 上游数据源多数不是线程安全的，读取统一串行化
+    private final Object mSourceLock = new Object();
+    private final ArrayDeque<Long> mPending = new ArrayDeque<>();
+    private final Thread mReadAheadThread;
+    private volatile boolean mClosed = false;
+
+    private final AtomicLong mHits = new AtomicLong();
+    private final AtomicLong mMisses = new AtomicLong();
+    private final AtomicLong mPrefetches = new AtomicLong();
+
+    BlockCacheMediaDataSource(IMediaDataSource source) throws IOException {
+        this(source, DEFAULT_BLOCK_SIZE, DEFAULT_MAX_BYTES, DEFAULT_READ_AHEAD);
+    }
+
+    BlockCacheMediaDataSource(IMediaDataSource source, int blockSize, int maxBytes, int readAhead)
+            throws IOException {
+        mSource = source;
+        mBlockSize = Math.max(4 * 1024, blockSize);
+        mMaxBlocks = Math.max(2, maxBytes / mBlockSize);
+        mReadAhead = Math.max(0, Math.min(readAhead, mMaxBlocks / 2));
+        mSize = source.getSize();
+        mBlocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > mMaxBlocks;
+            }
+        };
+        if (mReadAhead > 0) {
+            mReadAheadThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    readAheadLoop();
+                }
+            }, "ijk-readahead");
+            mReadAheadThread.setDaemon(true);
+            mReadAheadThread.start();
+        } else {
+            mReadAheadThread = null;
+        }
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (size <= 0)
+            return size;
+        if (mClosed || (mSize >= 0 && position >= mSize))
+            return -1;
+        int length = 0;
+        long index = position / mBlockSize;
+        while (length < size) {
+            index = position / mBlockSize;
+            byte[] block = getBlock(index);
+            int blockOffset = (int) (position - index * mBlockSize);
+            if (block == null || blockOffset >= block.length)
+                break;
+            int count = Math.min(size - length, block.length - blockOffset);
+            System.arraycopy(block, blockOffset, buffer, offset + length, count);
+            length += count;
+            position += count;
+            if (block.length < mBlockSize)
+                break;
+        }
+        scheduleReadAhead(index + 1);
+        return length > 0 ? length : -1;
+    }
+
+    private byte[] getBlock(long index) throws IOException {
+        byte[] block;
+        synchronized (mBlocks) {
+            block = mBlocks.get(index);
+        }
+        if (block != null) {
+            mHits.incrementAndGet();
+            return block;
+        }
+        return loadBlock(index, true);
+    }
+
+    /**
+     * @param demand 是否是播放器的读取，只有这时才计入命中/未命中，预读不计
+     */
+    private byte[] loadBlock(long index, boolean demand) throws IOException {
+        synchronized (mSourceLock) {
+            // 等锁期间预读线程可能已经读好了这个块，这种情况算命中
+            byte[] block;
+            synchronized (mBlocks) {
+                block = mBlocks.get(index);
+            }
+            if (block != null) {
+                if (demand)
+                    mHits.incrementAndGet();
+                return block;
+            }
+            if (mClosed)
+                return null;
+            if (demand)
+                mMisses.incrementAndGet();
+            block = new byte[mBlockSize];
+            long start = index * mBlockSize;
+            int filled = 0;
+            while (filled < mBlockSize) {
+                int read = mSource.readAt(start + filled, block, filled, mBlockSize - filled);
+                if (read <= 0)
+                    break;
+                filled += read;
+            }
+            if (filled == 0)
+                return null;
+            if (filled < mBlockSize) {
+                byte[] tail = new byte[filled];
+                System.arraycopy(block, 0, tail, 0, filled);
+                block = tail;
+            }
+            synchronized (mBlocks) {
+                mBlocks.put(index, block);
+            }
+            return block;
+        }
+    }
+
+    private void scheduleReadAhead(long from) {
+        if (mReadAheadThread == null)
+            return;
+        synchronized (mPending) {
+            // 只跟随最近一次读取的位置，旧的预读请求直接丢弃
+            mPending.clear();
+            for (long i = from; i < from + mReadAhead; i++) {
+                if (mSize >= 0 && i * mBlockSize >= mSize)
+                    break;
+                boolean cached;
+                synchronized (mBlocks) {
+                    cached = mBlocks.containsKey(i);
+                }
+                if (!cached)
+                    mPending.add(i);
+            }
+            if (!mPending.isEmpty())
+                mPending.notify();
+        }
+    }
+
+    private void readAheadLoop() {
+        while (!mClosed) {
+            Long index;
+            synchronized (mPending) {
+                while (mPending.isEmpty() && !mClosed) {
+                    try {
+                        mPending.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                index = mPending.poll();
+            }
+            if (index == null)
+                continue;
+            try {
+                boolean cached;
+                synchronized (mBlocks) {
+                    cached = mBlocks.containsKey(index);
+                }
+                if (!cached && loadBlock(index, false) != null)
+                    mPrefetches.incrementAndGet();
+            } catch (IOException e) {
+                Log.w(TAG, "read ahead failed " + e.getMessage());
+            }
+        }
+    }
+
+    long getHitCount() {
+        return mHits.get();
+    }
+
+    long getMissCount() {
+        return mMisses.get();
+    }
+
+    long getPrefetchCount() {
+        return mPrefetches.get();
+    }
+
+    int getBlockSize() {
+        return mBlockSize;
+    }
+
+    int getCachedBytes() {
+        synchronized (mBlocks) {
+            int bytes = 0;
+            for (byte[] block : mBlocks.values()) {
+                bytes += block.length;
+            }
+            return bytes;
+        }
+    }
+
+    @Override
+    public long getSize() {
+        return mSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mClosed)
+            return;
+        mClosed = true;
+        if (mReadAheadThread != null) {
+            synchronized (mPending) {
+                mPending.clear();
+                mPending.notify();
+            }
+        }
+        synchronized (mSourceLock) {
+            mSource.close();
+        }
+        synchronized (mBlocks) {
+            mBlocks.clear();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.zyu.ijkplayer;
+
+import androidx.core.util.Pools;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.events.Event;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+
+/**
+ * onBuffering 事件，未送达的开始/结束可以合并，JS 只看到最新的缓冲状态
+ */
+class BufferingEvent extends Event<BufferingEvent> {
+    static final String EVENT_NAME = "onBuffering";
+
+    private static final Pools.SynchronizedPool<BufferingEvent> POOL = new Pools.SynchronizedPool<>(2);
+
+    private boolean mBuffering;
+
+    private BufferingEvent() {
+    }
+
+    static BufferingEvent obtain(int viewTag, boolean buffering) {
+        BufferingEvent event = POOL.acquire();
+        if (event == null) {
+            event = new BufferingEvent();
+        }
+        event.init(viewTag);
+        event.mBuffering = buffering;
+        return event;
+    }
+
+    @Override
+    public void onDispose() {
+        POOL.release(this);
+    }
+
+    @Override
+    public String getEventName() {
+        return EVENT_NAME;
+    }
+
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
+
+    @Override
+    public short getCoalescingKey() {
+        return 0;
+    }
+
+    @Override
+    public void dispatch(RCTEventEmitter rctEventEmitter) {
+        WritableMap event = Arguments.createMap();
+        event.putBoolean("buffering", mBuffering);
+        rctEventEmitter.receiveEvent(getViewTag(), getEventName(), event);
+    }
+}
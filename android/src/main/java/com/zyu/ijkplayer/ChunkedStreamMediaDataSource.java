@@ -0,0 +1,247 @@
+package com.zyu.ijkplayer;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import tv.danmaku.ijk.media.player.misc.IMediaDataSource;
+
+/**
+ * 把只能顺序读取的流切成定长块缓存起来，回退读取直接命中缓存
+ *
+ * 解压过的数据按顺序落到磁盘上的临时文件，被淘汰的块和向前跳过的块都从文件定位读回，
+ * 不需要从头重新解压；临时文件不可用时才退化为重新打开流
+ */
+class ChunkedStreamMediaDataSource implements IMediaDataSource {
+
+    interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    private final static int CHUNK_SIZE = 64 * 1024;
+    private final static int DEFAULT_MAX_CACHE_BYTES = 32 * 1024 * 1024;
+    // 本进程已清理过残留临时文件的目录
+    private final static Set<String> sCleanedDirs = new HashSet<>();
+
+    private final StreamOpener mOpener;
+    private final int mMaxChunks;
+    private final LinkedHashMap<Long, byte[]> mChunks;
+    private InputStream mIs;
+    // 流当前所在位置，总是块对齐；有临时文件时 [0, mStreamPos) 都已写入文件
+    private long mStreamPos = 0;
+    @Nullable
+    private final File mSpillFile;
+    @Nullable
+    private RandomAccessFile mSpill;
+    private long mSize = -1;
+    private boolean mClosed = false;
+
+    ChunkedStreamMediaDataSource(StreamOpener opener, @Nullable File spillDir) throws IOException {
+        this(opener, DEFAULT_MAX_CACHE_BYTES, spillDir);
+    }
+
+    ChunkedStreamMediaDataSource(StreamOpener opener, int maxCacheBytes, @Nullable File spillDir) throws IOException {
+        mOpener = opener;
+        mSpillFile = createSpillFile(spillDir);
+        if (mSpillFile != null) {
+            try {
+                mSpill = new RandomAccessFile(mSpillFile, "rw");
+            } catch (IOException e) {
+                Log.w("DataSource", "failed to open spill file" + e.getMessage());
+                mSpillFile.delete();
+            }
+        }
+        mMaxChunks = Math.max(2, maxCacheBytes / CHUNK_SIZE);
+        mChunks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+                return size() > mMaxChunks;
+            }
+        };
+        try {
+            mIs = opener.open();
+        } catch (IOException e) {
+            closeSpill();
+            throw e;
+        }
+        // asset 流的 available() 在开头即为解压后的总长度
+        int available = mIs.available();
+        mSize = available > 0 ? available : -1;
+    }
+
+    @Override
+    public synchronized int readAt(long position, byte[] buffer, int offset, int size) {
+        if (size <= 0)
+            return size;
+        if (mClosed || (mSize >= 0 && position >= mSize))
+            return -1;
+        int length = 0;
+        try {
+            while (length < size) {
+                long index = position / CHUNK_SIZE;
+                byte[] chunk = loadChunk(index);
+                int chunkOffset = (int) (position - index * CHUNK_SIZE);
+                if (chunk == null || chunkOffset >= chunk.length)
+                    break;
+                int count = Math.min(size - length, chunk.length - chunkOffset);
+                System.arraycopy(chunk, chunkOffset, buffer, offset + length, count);
+                length += count;
+                position += count;
+                if (chunk.length < CHUNK_SIZE)
+                    break;
+            }
+        } catch (IOException e) {
+            Log.e("DataSource", "failed to read" + e.getMessage());
+        }
+        return length > 0 ? length : -1;
+    }
+
+    @Nullable
+    private static File createSpillFile(@Nullable File spillDir) {
+        if (spillDir == null)
+            return null;
+        if (!spillDir.exists() && !spillDir.mkdirs())
+            return null;
+        removeStaleSpills(spillDir);
+        try {
+            return File.createTempFile("chunk", ".spill", spillDir);
+        } catch (IOException e) {
+            Log.w("DataSource", "failed to create spill file" + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 进程被杀时临时文件来不及删除，每个目录在本进程第一次使用时清掉之前留下的
+     */
+    private static void removeStaleSpills(File spillDir) {
+        synchronized (sCleanedDirs) {
+            if (!sCleanedDirs.add(spillDir.getAbsolutePath()))
+                return;
+            File[] files = spillDir.listFiles();
+            if (files == null)
+                return;
+            for (File file : files) {
+                if (file.getName().endsWith(".spill"))
+                    file.delete();
+            }
+        }
+    }
+
+    private byte[] loadChunk(long index) throws IOException {
+        byte[] chunk = mChunks.get(index);
+        if (chunk != null)
+            return chunk;
+        long start = index * CHUNK_SIZE;
+        if (start < mStreamPos) {
+            if (mSpill != null) {
+                chunk = readSpilled(start);
+                if (chunk != null)
+                    mChunks.put(index, chunk);
+                return chunk;
+            }
+            // 没有临时文件，已淘汰的块只能从头重新解压
+            mIs.close();
+            mIs = mOpener.open();
+            mStreamPos = 0;
+        }
+        // 向前跳跃途经的块只写入临时文件，不占用内存缓存
+        while (mStreamPos <= start) {
+            chunk = readChunk();
+            if (chunk == null)
+                return null;
+            spill(chunk);
+            long current = mStreamPos / CHUNK_SIZE;
+            mStreamPos += chunk.length;
+            if (current == index) {
+                mChunks.put(index, chunk);
+                return chunk;
+            }
+            if (chunk.length < CHUNK_SIZE)
+                break;
+        }
+        return null;
+    }
+
+    private void spill(byte[] chunk) {
+        if (mSpill == null)
+            return;
+        try {
+            mSpill.seek(mStreamPos);
+            mSpill.write(chunk);
+        } catch (IOException e) {
+            // 写失败后不再使用临时文件，之后按原来的方式重新解压
+            Log.w("DataSource", "failed to spill chunk" + e.getMessage());
+            closeSpill();
+        }
+    }
+
+    @Nullable
+    private byte[] readSpilled(long start) throws IOException {
+        int length = (int) Math.min(CHUNK_SIZE, mStreamPos - start);
+        byte[] chunk = new byte[length];
+        mSpill.seek(start);
+        mSpill.readFully(chunk);
+        return chunk;
+    }
+
+    private void closeSpill() {
+        if (mSpill != null) {
+            try {
+                mSpill.close();
+            } catch (IOException e) {
+                Log.e("DataSource", "failed to close spill file" + e.getMessage());
+            }
+            mSpill = null;
+        }
+        if (mSpillFile != null)
+            mSpillFile.delete();
+    }
+
+    private byte[] readChunk() throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int filled = 0;
+        while (filled < CHUNK_SIZE) {
+            int read = mIs.read(chunk, filled, CHUNK_SIZE - filled);
+            if (read < 0)
+                break;
+            filled += read;
+        }
+        if (filled == 0)
+            return null;
+        if (filled < CHUNK_SIZE) {
+            byte[] tail = new byte[filled];
+            System.arraycopy(chunk, 0, tail, 0, filled);
+            chunk = tail;
+        }
+        return chunk;
+    }
+
+    @Override
+    public long getSize() {
+        return mSize;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!mClosed) {
+            mClosed = true;
+            mChunks.clear();
+            closeSpill();
+            try {
+                mIs.close();
+            } catch (IOException e) {
+                Log.e("DataSource", "failed to close" + e.getMessage());
+            }
+        }
+    }
+}
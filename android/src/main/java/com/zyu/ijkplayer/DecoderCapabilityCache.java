@@ -0,0 +1,119 @@
+package com.zyu.ijkplayer;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 记录本机硬解失败过的编码和分辨率，之后的播放直接走软解
+ *
+ * 按分辨率分档，某一档失败后认为更高的档位同样不可用；
+ * 系统升级后 Build.FINGERPRINT 变化，记录全部作废
+ *
+ * 另外在内存中记住最近播放过的地址实际的分辨率档位，再次播放时准备前就能选对解码方式
+ */
+class DecoderCapabilityCache {
+    private static final String TAG = "DecoderCapabilityCache";
+    private static final String PREFS_NAME = "ijk-decoder-caps";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_PREFIX = "failed-from:";
+
+    final static int BUCKET_SD = 0;
+    final static int BUCKET_HD = 1;
+    final static int BUCKET_FHD = 2;
+    final static int BUCKET_UHD = 3;
+    // 没有失败记录
+    private final static int BUCKET_NONE = 4;
+
+    // 可以单独开启硬解的编码及对应的 ijk 选项
+    final static String[] CODECS = {"h264", "hevc", "mpeg2video", "mpeg4"};
+    final static String[] CODEC_OPTIONS = {"mediacodec", "mediacodec-hevc", "mediacodec-mpeg2", "mediacodec-mpeg4"};
+
+    private static final int MAX_SOURCES = 64;
+
+    private static DecoderCapabilityCache sInstance;
+
+    private final SharedPreferences mPrefs;
+    private final LinkedHashMap<String, Integer> mLastBuckets = new LinkedHashMap<String, Integer>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_SOURCES;
+        }
+    };
+
+    static synchronized DecoderCapabilityCache get(Context context) {
+        if (sInstance == null) {
+            sInstance = new DecoderCapabilityCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private DecoderCapabilityCache(Context context) {
+        mPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        if (!Build.FINGERPRINT.equals(mPrefs.getString(KEY_FINGERPRINT, null))) {
+            mPrefs.edit().clear().putString(KEY_FINGERPRINT, Build.FINGERPRINT).apply();
+        }
+    }
+
+    static int bucketOf(int width, int height) {
+        int shortSide = Math.min(width, height);
+        if (shortSide <= 480)
+            return BUCKET_SD;
+        if (shortSide <= 720)
+            return BUCKET_HD;
+        if (shortSide <= 1080)
+            return BUCKET_FHD;
+        return BUCKET_UHD;
+    }
+
+    /**
+     * 该编码在这个分辨率档位是否可以尝试硬解
+     */
+    boolean isHardwareAllowed(String codec, int bucket) {
+        return bucket < mPrefs.getInt(KEY_PREFIX + codec, BUCKET_NONE);
+    }
+
+    /**
+     * 准备之前还不知道分辨率，只要最低档没有失败过就先开启
+     */
+    boolean isHardwareAllowed(String codec) {
+        return isHardwareAllowed(codec, BUCKET_SD);
+    }
+
+    synchronized void recordBucket(@Nullable String source, int bucket) {
+        if (source != null)
+            mLastBuckets.put(source, bucket);
+    }
+
+    /**
+     * 该地址上次准备得到的分辨率档位，没有记录时按最低档
+     */
+    synchronized int lastBucket(@Nullable String source) {
+        Integer bucket = source != null ? mLastBuckets.get(source) : null;
+        return bucket != null ? bucket : BUCKET_SD;
+    }
+
+    void recordFailure(String codec, int bucket) {
+        if (codec == null)
+            return;
+        synchronized (this) {
+            if (bucket < mPrefs.getInt(KEY_PREFIX + codec, BUCKET_NONE)) {
+                mPrefs.edit().putInt(KEY_PREFIX + codec, bucket).apply();
+                Log.w(TAG, "hardware decode disabled for " + codec + " from bucket " + bucket);
+            }
+        }
+    }
+
+    void clear() {
+        synchronized (this) {
+            mLastBuckets.clear();
+        }
+        mPrefs.edit().clear().putString(KEY_FINGERPRINT, Build.FINGERPRINT).apply();
+    }
+}
@@ -49,4 +49,17 @@ interface FijkEngine {
     void setScreenOn(boolean on);
 
     void audioFocus(boolean request);
+
+    @Nullable
+    HttpCacheProxy cacheProxy();
+
+    /**
+     * 在播放器的命令线程上执行，和 JS 发来的命令保持顺序
+     */
+    void runOnPlayerThread(@NonNull FijkPlayer player, @NonNull Runnable task);
+
+    /**
+     * 播放器开始准备或从挂起恢复，即将占用解码器，在播放器线程上调用
+     */
+    void onDecoderAcquired(@NonNull FijkPlayer player);
 }
@@ -25,7 +25,11 @@ package com.zyu.ijkplayer;
 import android.content.Context;
 import android.content.res.AssetManager;
 import android.graphics.Bitmap;
+import android.graphics.SurfaceTexture;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.Surface;
@@ -36,13 +40,17 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import tv.danmaku.ijk.media.player.IMediaPlayer;
+import tv.danmaku.ijk.media.player.IjkMediaMeta;
 import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+import tv.danmaku.ijk.media.player.MediaInfo;
 import tv.danmaku.ijk.media.player.misc.IMediaDataSource;
 
 public class FijkPlayer implements IMediaPlayer.OnPreparedListener, 
@@ -52,6 +60,7 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
 
     private static final String TAG = "FijkPlayer";
     final private static AtomicInteger atomicId = new AtomicInteger(0);
+    final private static AtomicInteger abrIds = new AtomicInteger(0);
 
     // 播放器状态常量
     final public static int STATE_IDLE = 0;
@@ -65,25 +74,100 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
     final public static int STATE_ERROR = 8;
     final public static int STATE_END = 9;
 
-    final private int mPlayerId;
+    final public static int RENDER_SURFACE_VIEW = 0;
+    final public static int RENDER_TEXTURE_VIEW = 1;
+
+    // 列表播放切换时与预备的下一个播放器交换，保证 JS 看到的 id 不变
+    private volatile int mPlayerId;
     final private IjkMediaPlayer mIjkMediaPlayer;
     final private FijkEngine mEngine;
     final private HostOption mHostOptions = new HostOption();
 
-    private int mState;
+    private volatile int mState;
     private int mRotate = -1;
     private int mWidth = 0;
     private int mHeight = 0;
     private Surface mSurface;
+    // TextureView 模式下 SurfaceTexture 归播放器所有，视图重新挂载时直接接回，解码器的输出 Surface 不变
+    private int mRenderType = RENDER_SURFACE_VIEW;
+    private SurfaceTexture mTexture;
+    private Surface mTextureSurface;
+    private BlockCacheMediaDataSource mBlockCache;
+    private HlsAbrController mAbr;
     
+    public interface OnStateChangedListener {
+        void onStateChanged(FijkPlayer player, int newState, int oldState);
+    }
+
+    private final List<OnStateChangedListener> mStateListeners = new CopyOnWriteArrayList<>();
+    private final PlaybackStats mStats = new PlaybackStats();
+    private final NativeStats mNativeStats = new NativeStats();
+    private final PlayerStateCell mStateCell = new PlayerStateCell();
+
+    private static class IjkOption {
+        final int category;
+        final String name;
+        final String strValue;
+        final long longValue;
+
+        IjkOption(int category, String name, String strValue, long longValue) {
+            this.category = category;
+            this.name = name;
+            this.strValue = strValue;
+            this.longValue = longValue;
+        }
+    }
+
+    // 设置过的 ijk 选项，reset() 会清掉 native 中的选项，重新准备时按顺序重放
+    private final List<IjkOption> mIjkOptions = new ArrayList<>();
+    private String mDataSource;
+    // 重新准备期间对外保持原来的状态，不重复通知 prepared
+    private volatile boolean mRepreparing = false;
+    private boolean mStartAfterPrepared = false;
+    // 首次准备期间调用了 start，准备完成后开始播放
+    private volatile boolean mPlayWhenPrepared = false;
+
+    // 准备完成后确认由 MediaCodec 解码，准备前和软解时为 false；以及失败后本次播放强制软解
+    private volatile boolean mHardwareActive = false;
+    private boolean mForceSoftware = false;
+    private String mVideoCodec;
+    private int mVideoBucket = DecoderCapabilityCache.BUCKET_SD;
+    private volatile boolean mFirstFrameRendered = false;
+    private volatile boolean mBuffering = false;
+    // 重新接上 Surface 时用来刷新画面的 seek，不通知给外部
+    private volatile boolean mRedrawSeek = false;
+    // 挂起时 native 播放器已 reset，只保留地址、选项和位置，对外状态不变
+    private volatile boolean mSuspended = false;
+    private long mSuspendedPosition = 0;
+    private long mSuspendedDuration = 0;
+    // 挂起期间的 seek 在恢复准备完成时通知
+    private boolean mSeekOnRestore = false;
+    // 最近一次被使用的时间，超出解码器预算时挂起最久未使用的
+    private volatile long mLastUsedAt = SystemClock.elapsedRealtime();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mFirstFrameWatchdog = new Runnable() {
+        @Override
+        public void run() {
+            if (!mHardwareActive || mFirstFrameRendered || mState != STATE_STARTED)
+                return;
+            if (mBuffering) {
+                // 还在等数据，不算解码器的问题
+                armFirstFrameWatchdog();
+                return;
+            }
+            Log.w(TAG, "no first frame from hardware decoder, fall back to software");
+            fallbackToSoftware(true);
+        }
+    };
+
     // 播放器事件监听器
-    private IMediaPlayer.OnPreparedListener mOnPreparedListener;
-    private IMediaPlayer.OnCompletionListener mOnCompletionListener;
-    private IMediaPlayer.OnBufferingUpdateListener mOnBufferingUpdateListener;
-    private IMediaPlayer.OnSeekCompleteListener mOnSeekCompleteListener;
-    private IMediaPlayer.OnErrorListener mOnErrorListener;
-    private IMediaPlayer.OnInfoListener mOnInfoListener;
-    private IMediaPlayer.OnVideoSizeChangedListener mOnVideoSizeChangedListener;
+    private volatile IMediaPlayer.OnPreparedListener mOnPreparedListener;
+    private volatile IMediaPlayer.OnCompletionListener mOnCompletionListener;
+    private volatile IMediaPlayer.OnBufferingUpdateListener mOnBufferingUpdateListener;
+    private volatile IMediaPlayer.OnSeekCompleteListener mOnSeekCompleteListener;
+    private volatile IMediaPlayer.OnErrorListener mOnErrorListener;
+    private volatile IMediaPlayer.OnInfoListener mOnInfoListener;
+    private volatile IMediaPlayer.OnVideoSizeChangedListener mOnVideoSizeChangedListener;
 
     public FijkPlayer(@NonNull FijkEngine engine, boolean justSurface) {
         mEngine = engine;
@@ -101,16 +185,50 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
             mIjkMediaPlayer.setOnErrorListener(this);
             mIjkMediaPlayer.setOnInfoListener(this);
             mIjkMediaPlayer.setOnVideoSizeChangedListener(this);
-            
-            mIjkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "enable-position-notify", 1);
-            mIjkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "start-on-prepared", 0);
+
+            applyDefaultOptions();
         }
     }
 
+    // reset() 会重建 native 播放器，默认选项需要重新设置
+    private void applyDefaultOptions() {
+        mIjkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "enable-position-notify", 1);
+        mIjkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "start-on-prepared", 0);
+    }
+
     public int getPlayerId() {
         return mPlayerId;
     }
 
+    public int getState() {
+        return mState;
+    }
+
+    /**
+     * 从池中取出时换一个新 id，上一个使用者留在 JS 里的 id 不会再指向这个播放器
+     */
+    void renewId() {
+        mPlayerId = atomicId.incrementAndGet();
+    }
+
+    static void swapIds(FijkPlayer a, FijkPlayer b) {
+        int id = a.mPlayerId;
+        a.mPlayerId = b.mPlayerId;
+        b.mPlayerId = id;
+    }
+
+    void copyHostOptions(FijkPlayer from) {
+        mHostOptions.copyFrom(from.mHostOptions);
+    }
+
+    public void addOnStateChangedListener(OnStateChangedListener listener) {
+        mStateListeners.add(listener);
+    }
+
+    public void removeOnStateChangedListener(OnStateChangedListener listener) {
+        mStateListeners.remove(listener);
+    }
+
     public void setup() {
         if (mIjkMediaPlayer == null)
             return;
@@ -120,27 +238,152 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
         }
     }
 
+    public void setHostOption(String key, int value) {
+        mHostOptions.addIntOption(key, value);
+    }
+
+    public void setHostOption(String key, String value) {
+        mHostOptions.addStrOption(key, value);
+    }
+
     public void setupSurface() {
         setup();
     }
 
+    /**
+     * Surface 为 null 时只停止视频输出，解复用和音频照常进行；
+     * 暂停状态下重新拿到 Surface 时原地 seek 一次，让当前帧重新画出来，不需要重新准备
+     */
     public void setSurface(Surface surface) {
+        Surface old = mSurface;
         mSurface = surface;
-        if (mIjkMediaPlayer != null) {
+        if (mIjkMediaPlayer != null && mState != STATE_END) {
             mIjkMediaPlayer.setSurface(surface);
+            if (!mSuspended && old == null && surface != null && (mState == STATE_PAUSED || mState == STATE_PREPARED)) {
+                mRedrawSeek = true;
+                mIjkMediaPlayer.seekTo(mIjkMediaPlayer.getCurrentPosition());
+            }
         }
     }
 
+    Surface getSurface() {
+        return mSurface;
+    }
+
     public void release() {
         if (mIjkMediaPlayer != null) {
             mState = STATE_END;
             mIjkMediaPlayer.release();
         }
         
-        if (mSurface != null) {
-            mSurface.release();
-            mSurface = null;
+        closeAbr();
+        // SurfaceView 的 Surface 归 SurfaceHolder 管理，这里只释放自己的 SurfaceTexture
+        releaseTexture();
+        mSurface = null;
+    }
+
+    /**
+     * TextureView 的 SurfaceTexture 可用时调用。播放器还没有 SurfaceTexture 时接管传入的这个，
+     * 已有时返回自己的，视图应改用返回值；返回的 SurfaceTexture 视图销毁时不能释放
+     */
+    SurfaceTexture attachTexture(SurfaceTexture texture) {
+        if (mTexture == null) {
+            mTexture = texture;
+            mTextureSurface = new Surface(texture);
+        }
+        if (mSurface != mTextureSurface) {
+            setSurface(mTextureSurface);
         }
+        return mTexture;
+    }
+
+    /**
+     * 把当前的画面输出（Surface 以及 TextureView 模式下自己持有的 SurfaceTexture）整体交给 next，
+     * 同一个 Surface 同时只能连接一个解码器，这里先断开自己再交给 next
+     */
+    void handOverOutput(FijkPlayer next) {
+        Surface surface = mSurface;
+        if (mIjkMediaPlayer != null && mState != STATE_END)
+            mIjkMediaPlayer.setSurface(null);
+        mSurface = null;
+        next.releaseTexture();
+        next.mRenderType = mRenderType;
+        next.mTexture = mTexture;
+        next.mTextureSurface = mTextureSurface;
+        mTexture = null;
+        mTextureSurface = null;
+        mRenderType = RENDER_SURFACE_VIEW;
+        // next 马上开始播放，不需要 setSurface 里的重绘 seek
+        next.mSurface = surface;
+        if (next.mIjkMediaPlayer != null && next.mState != STATE_END)
+            next.mIjkMediaPlayer.setSurface(surface);
+    }
+
+    boolean ownsTexture(SurfaceTexture texture) {
+        return texture != null && texture == mTexture;
+    }
+
+    private void releaseTexture() {
+        if (mTextureSurface != null) {
+            if (mSurface == mTextureSurface) {
+                if (mIjkMediaPlayer != null && mState != STATE_END)
+                    mIjkMediaPlayer.setSurface(null);
+                mSurface = null;
+            }
+            mTextureSurface.release();
+            mTextureSurface = null;
+        }
+        if (mTexture != null) {
+            mTexture.release();
+            mTexture = null;
+        }
+    }
+
+    /**
+     * 释放前先断开与视图和 JS 的联系，之后的 release() 可以放到后台线程执行
+     */
+    public void detach() {
+        mOnPreparedListener = null;
+        mOnCompletionListener = null;
+        mOnBufferingUpdateListener = null;
+        mOnSeekCompleteListener = null;
+        mOnErrorListener = null;
+        mOnInfoListener = null;
+        mOnVideoSizeChangedListener = null;
+        mStateListeners.clear();
+        mHandler.removeCallbacks(mFirstFrameWatchdog);
+        if (mIjkMediaPlayer != null) {
+            if (mIjkMediaPlayer.isPlaying())
+                mIjkMediaPlayer.pause();
+            mIjkMediaPlayer.setSurface(null);
+        }
+    }
+
+    /**
+     * 重置到刚创建时的状态以便放回播放器池，清除上一次使用的监听器、Surface 和选项
+     */
+    public void recycle() {
+        if (mIjkMediaPlayer == null)
+            return;
+        mOnPreparedListener = null;
+        mOnCompletionListener = null;
+        mOnBufferingUpdateListener = null;
+        mOnSeekCompleteListener = null;
+        mOnErrorListener = null;
+        mOnInfoListener = null;
+        mOnVideoSizeChangedListener = null;
+        mStateListeners.clear();
+        mHandler.removeCallbacks(mFirstFrameWatchdog);
+        reset();
+        releaseTexture();
+        mRenderType = RENDER_SURFACE_VIEW;
+        mIjkMediaPlayer.setSurface(null);
+        mSurface = null;
+        mBlockCache = null;
+        mStats.reset();
+        mWidth = 0;
+        mHeight = 0;
+        mHostOptions.clear();
     }
 
     private boolean isPlayable(int state) {
@@ -177,12 +420,39 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
         } else if (!isPlayable(newState) && isPlayable(oldState)) {
             mEngine.onPlayableChange(-1);
         }
+
+        publishState();
+
+        if (newState != oldState) {
+            for (OnStateChangedListener listener : mStateListeners) {
+                listener.onStateChanged(this, newState, oldState);
+            }
+        }
+    }
+
+    PlayerStateCell getStateCell() {
+        return mStateCell;
+    }
+
+    // 写入同步 getter 读取的状态，以当前位置作为外推的锚点
+    private void publishState() {
+        int state = mState;
+        boolean advancing = state == STATE_STARTED && !mBuffering && !mRepreparing && !mSuspended;
+        mStateCell.update(state, getCurrentPosition(), getDuration(), advancing);
     }
 
     public void setDataSource(String url) throws IOException {
         if (mIjkMediaPlayer == null)
             return;
             
+        mStats.onDataSource();
+        mDataSource = url;
+        mForceSoftware = false;
+        openDataSource(url);
+        onStateChanged(STATE_INITIALIZED, mState);
+    }
+
+    private void openDataSource(String url) throws IOException {
         Uri uri = Uri.parse(url);
         boolean openAsset = false;
         if ("asset".equals(uri.getScheme())) {
@@ -198,21 +468,103 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
         Context context = mEngine.context();
         if (openAsset && context != null) {
             AssetManager assetManager = context.getAssets();
-            InputStream is = assetManager.open(uri.getPath() != null ? uri.getPath() : "", AssetManager.ACCESS_RANDOM);
-            mIjkMediaPlayer.setDataSource(new RawMediaDataSource(is));
+            String path = uri.getPath() != null ? uri.getPath() : "";
+            mIjkMediaPlayer.setDataSource(wrapDataSource(AssetMediaDataSource.open(assetManager, path,
+                    new File(context.getCacheDir(), "ijk-asset-spill"))));
         } else if (context != null){
             if (TextUtils.isEmpty(uri.getScheme()) || "file".equals(uri.getScheme())) {
                 String path = uri.getPath() != null ? uri.getPath() : "";
-                IMediaDataSource dataSource = new FileMediaDataSource(new File(path));
-                mIjkMediaPlayer.setDataSource(dataSource);
+                int readMode = mHostOptions.getIntOption(HostOption.FILE_READ_MODE, FileMediaDataSource.MODE_MAPPED);
+                IMediaDataSource dataSource = new FileMediaDataSource(new File(path), readMode);
+                mIjkMediaPlayer.setDataSource(wrapDataSource(dataSource));
+            } else if (mHostOptions.getIntOption(HostOption.ABR, 0) > 0 && HttpCacheProxy.isHttp(url)
+                    && HttpCacheProxy.isPlaylistUrl(url) && mEngine.cacheProxy() != null) {
+                // 主列表经代理换成由 HlsAbrController 按分片选码率的虚拟列表
+                mIjkMediaPlayer.setDataSource(context, Uri.parse(openAbr(url)));
+            } else if (mHostOptions.getIntOption(HostOption.HTTP_CACHE, 0) > 0 && HttpCacheProxy.isHttp(url)
+                    && mEngine.cacheProxy() != null) {
+                // 经本地代理播放，已下载过的数据直接从磁盘读取
+                mIjkMediaPlayer.setDataSource(context, Uri.parse(mEngine.cacheProxy().proxyUrl(url)));
             } else {
                 mIjkMediaPlayer.setDataSource(context, uri);
             }
         } else {
             throw new IOException("Context is null, can't setDataSource");
         }
-        
-        onStateChanged(STATE_INITIALIZED, mState);
+    }
+
+    // 重新准备同一地址时沿用已有的会话，保留带宽估计和当前档位
+    private String openAbr(String url) {
+        HttpCacheProxy proxy = mEngine.cacheProxy();
+        if (mAbr == null || !mAbr.getMasterUrl().equals(url)) {
+            closeAbr();
+            HlsAbrController.Rules rules = new HlsAbrController.Rules();
+            rules.startupIndex = mHostOptions.getIntOption(HostOption.ABR_STARTUP_INDEX, rules.startupIndex);
+            rules.bandwidthFraction = mHostOptions.getIntOption(HostOption.ABR_BANDWIDTH_FRACTION,
+                    Math.round(rules.bandwidthFraction * 100)) / 100f;
+            rules.minBufferForUpMs = mHostOptions.getIntOption(HostOption.ABR_MIN_BUFFER_FOR_UP, (int) rules.minBufferForUpMs);
+            rules.maxBufferForDownMs = mHostOptions.getIntOption(HostOption.ABR_MAX_BUFFER_FOR_DOWN, (int) rules.maxBufferForDownMs);
+            rules.panicBufferMs = mHostOptions.getIntOption(HostOption.ABR_PANIC_BUFFER, (int) rules.panicBufferMs);
+            rules.maxBitrate = mHostOptions.getIntOption(HostOption.ABR_MAX_BITRATE, 0);
+            mAbr = new HlsAbrController(abrIds.incrementAndGet(), url, rules, new HlsAbrController.BufferProbe() {
+                @Override
+                public long bufferedMs() {
+                    int state = mState;
+                    if (state != STATE_STARTED && state != STATE_PAUSED)
+                        return -1;
+                    return mIjkMediaPlayer.getVideoCachedDuration();
+                }
+            });
+        }
+        return proxy.abrUrl(mAbr);
+    }
+
+    private void closeAbr() {
+        if (mAbr != null) {
+            HttpCacheProxy proxy = mEngine.cacheProxy();
+            if (proxy != null)
+                proxy.removeAbr(mAbr);
+            mAbr = null;
+        }
+    }
+
+    HlsAbrController getAbr() {
+        return mAbr;
+    }
+
+    private IMediaDataSource wrapDataSource(IMediaDataSource source) throws IOException {
+        mBlockCache = null;
+        if (mHostOptions.getIntOption(HostOption.BLOCK_CACHE, 0) <= 0)
+            return source;
+        mBlockCache = new BlockCacheMediaDataSource(source,
+                mHostOptions.getIntOption(HostOption.BLOCK_CACHE_BLOCK_SIZE, BlockCacheMediaDataSource.DEFAULT_BLOCK_SIZE),
+                mHostOptions.getIntOption(HostOption.BLOCK_CACHE_MAX_BYTES, BlockCacheMediaDataSource.DEFAULT_MAX_BYTES),
+                mHostOptions.getIntOption(HostOption.BLOCK_CACHE_READ_AHEAD, BlockCacheMediaDataSource.DEFAULT_READ_AHEAD));
+        return mBlockCache;
+    }
+
+    BlockCacheMediaDataSource getBlockCache() {
+        return mBlockCache;
+    }
+
+    PlaybackStats getPlaybackStats() {
+        return mStats;
+    }
+
+    NativeStats getNativeStats() {
+        return mNativeStats;
+    }
+
+    /**
+     * 读取一次 native 统计，只在准备完成之后到释放之前有意义
+     */
+    boolean sampleNativeStats() {
+        int state = mState;
+        if (mIjkMediaPlayer == null || mSuspended || state == STATE_END || state == STATE_IDLE
+                || state == STATE_INITIALIZED || state == STATE_ERROR)
+            return false;
+        mNativeStats.sample(mIjkMediaPlayer);
+        return true;
     }
 
     public void prepareAsync() {
@@ -220,6 +572,10 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
             return;
             
         setup();
+        applyDecoderOptions();
+        mStats.onPrepareAsync();
+        mLastUsedAt = SystemClock.elapsedRealtime();
+        mEngine.onDecoderAcquired(this);
         mIjkMediaPlayer.prepareAsync();
         onStateChanged(STATE_ASYNC_PREPARING, mState);
     }
@@ -227,22 +583,54 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
     public void start() {
         if (mIjkMediaPlayer == null)
             return;
+        if (mSuspended) {
+            // 恢复准备完成后自动开始播放
+            restore(true);
+            onStateChanged(STATE_STARTED, mState);
+            return;
+        }
+        mLastUsedAt = SystemClock.elapsedRealtime();
+        if (mRepreparing) {
+            // native 播放器还在准备，start 会被忽略，等准备完成再开始
+            mStartAfterPrepared = true;
+            onStateChanged(STATE_STARTED, mState);
+            return;
+        }
+        if (mState == STATE_ASYNC_PREPARING) {
+            mPlayWhenPrepared = true;
+            return;
+        }
             
         mIjkMediaPlayer.start();
         onStateChanged(STATE_STARTED, mState);
+        if (mHardwareActive && !mFirstFrameRendered)
+            armFirstFrameWatchdog();
     }
 
     public void pause() {
         if (mIjkMediaPlayer == null)
             return;
+        mLastUsedAt = SystemClock.elapsedRealtime();
+        mPlayWhenPrepared = false;
+        if (mSuspended || mRepreparing) {
+            mStartAfterPrepared = false;
+            onStateChanged(STATE_PAUSED, mState);
+            return;
+        }
             
         mIjkMediaPlayer.pause();
+        mHandler.removeCallbacks(mFirstFrameWatchdog);
         onStateChanged(STATE_PAUSED, mState);
     }
 
     public void stop() {
         if (mIjkMediaPlayer == null)
             return;
+        if (mSuspended) {
+            mSuspended = false;
+            onStateChanged(STATE_STOPPED, mState);
+            return;
+        }
             
         mIjkMediaPlayer.stop();
         onStateChanged(STATE_STOPPED, mState);
@@ -252,20 +640,210 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
         if (mIjkMediaPlayer == null)
             return;
             
+        mHandler.removeCallbacks(mFirstFrameWatchdog);
         mIjkMediaPlayer.reset();
+        mIjkOptions.clear();
+        mDataSource = null;
+        mPlayWhenPrepared = false;
+        mStateCell.reset();
+        closeAbr();
+        mSuspended = false;
+        mSeekOnRestore = false;
+        mRepreparing = false;
+        mHardwareActive = false;
+        mFirstFrameRendered = false;
+        mBuffering = false;
+        applyDefaultOptions();
         onStateChanged(STATE_IDLE, mState);
     }
 
+    private void applyRecordedOptions() {
+        for (IjkOption option : mIjkOptions) {
+            if (option.strValue != null) {
+                mIjkMediaPlayer.setOption(option.category, option.name, option.strValue);
+            } else {
+                mIjkMediaPlayer.setOption(option.category, option.name, option.longValue);
+            }
+        }
+    }
+
+    /**
+     * 按解码能力缓存决定本次准备开启哪些编码的硬解，选项不记录，每次准备重新计算
+     *
+     * 分辨率档位优先取调用方给的尺寸，其次取该地址上次准备得到的档位，都没有时按最低档；
+     * 已知在该档位硬解失败过的编码准备前就关掉，不必先硬解准备一次再改软解
+     */
+    private void applyDecoderOptions() {
+        mHardwareActive = false;
+        mFirstFrameRendered = false;
+        mVideoCodec = null;
+        Context context = mEngine.context();
+        if (mForceSoftware || context == null || mHostOptions.getIntOption(HostOption.HW_DECODE, 0) <= 0)
+            return;
+        DecoderCapabilityCache cache = DecoderCapabilityCache.get(context);
+        int width = mHostOptions.getIntOption(HostOption.HW_VIDEO_WIDTH, 0);
+        int height = mHostOptions.getIntOption(HostOption.HW_VIDEO_HEIGHT, 0);
+        int bucket = width > 0 && height > 0
+                ? DecoderCapabilityCache.bucketOf(width, height) : cache.lastBucket(mDataSource);
+        mVideoBucket = bucket;
+        boolean any = false;
+        for (int i = 0; i < DecoderCapabilityCache.CODECS.length; i++) {
+            if (cache.isHardwareAllowed(DecoderCapabilityCache.CODECS[i], bucket)) {
+                mIjkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, DecoderCapabilityCache.CODEC_OPTIONS[i], 1);
+                any = true;
+            }
+        }
+        // 准备完成后由 resolveVideoDecoder 根据实际使用的解码器设置 mHardwareActive
+        if (any) {
+            mIjkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "mediacodec-auto-rotate", 1);
+            mIjkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "mediacodec-handle-resolution-change", 1);
+        }
+    }
+
+    // 准备完成后确认实际使用的解码器和视频的编码、分辨率
+    private void resolveVideoDecoder() {
+        MediaInfo info = mIjkMediaPlayer.getMediaInfo();
+        IjkMediaMeta.IjkStreamMeta video = info != null && info.mMeta != null ? info.mMeta.mVideoStream : null;
+        if (video != null) {
+            mVideoCodec = video.mCodecName;
+            mVideoBucket = DecoderCapabilityCache.bucketOf(video.mWidth, video.mHeight);
+            Context context = mEngine.context();
+            if (context != null)
+                DecoderCapabilityCache.get(context).recordBucket(mDataSource, mVideoBucket);
+        }
+        mHardwareActive = mIjkMediaPlayer.getVideoDecoder() == IjkMediaPlayer.FFP_PROPV_DECODER_MEDIACODEC;
+    }
+
+    /**
+     * 网络、http 和解复用错误由 ijk 以负的 ffmpeg 错误码放在 extra 中上报，IO 和超时同样为负值，
+     * 这些与解码器无关，不能改软解，更不能写入解码能力缓存
+     */
+    static boolean isDecoderError(int extra) {
+        return extra >= 0;
+    }
+
+    private void armFirstFrameWatchdog() {
+        mHandler.removeCallbacks(mFirstFrameWatchdog);
+        mHandler.postDelayed(mFirstFrameWatchdog,
+                mHostOptions.getIntOption(HostOption.HW_FIRST_FRAME_TIMEOUT, HostOption.DEFAULT_HW_FIRST_FRAME_TIMEOUT));
+    }
+
+    /**
+     * 硬解失败，在播放器线程上以软解从当前位置重新准备
+     *
+     * @param record 是否写入解码能力缓存
+     */
+    private void fallbackToSoftware(final boolean record) {
+        mHardwareActive = false;
+        mHandler.removeCallbacks(mFirstFrameWatchdog);
+        mEngine.runOnPlayerThread(this, new Runnable() {
+            @Override
+            public void run() {
+                Context context = mEngine.context();
+                if (record && context != null) {
+                    DecoderCapabilityCache.get(context).recordFailure(mVideoCodec, mVideoBucket);
+                }
+                mForceSoftware = true;
+                int state = mState;
+                reprepare(getCurrentPosition(), state == STATE_STARTED);
+            }
+        });
+    }
+
+    /**
+     * 重建 native 播放器并从指定位置重新准备，对外的状态保持不变，
+     * 必须在播放器线程上调用
+     *
+     * @param positionMs 开始位置
+     * @param play       准备完成后是否继续播放
+     */
+    void reprepare(long positionMs, boolean play) {
+        if (mIjkMediaPlayer == null || mDataSource == null || mState == STATE_END)
+            return;
+        mRepreparing = true;
+        mStartAfterPrepared = play;
+        mHandler.removeCallbacks(mFirstFrameWatchdog);
+        mIjkMediaPlayer.reset();
+        applyDefaultOptions();
+        applyRecordedOptions();
+        if (positionMs > 0)
+            mIjkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "seek-at-start", positionMs);
+        mIjkMediaPlayer.setSurface(mSurface);
+        try {
+            openDataSource(mDataSource);
+        } catch (IOException e) {
+            mRepreparing = false;
+            Log.e(TAG, "reprepare failed: " + e.getMessage());
+            onError(mIjkMediaPlayer, IMediaPlayer.MEDIA_ERROR_UNKNOWN, IMediaPlayer.MEDIA_ERROR_IO);
+            return;
+        }
+        setup();
+        applyDecoderOptions();
+        mIjkMediaPlayer.prepareAsync();
+    }
+
+    /**
+     * 挂起：reset native 播放器，释放解码器和解复用缓冲，只保留地址、选项和播放位置，对外状态不变；
+     * 只对暂停、准备完成和播放结束的播放器有效，必须在播放器线程上调用
+     *
+     * @return 是否挂起
+     */
+    boolean suspend() {
+        int state = mState;
+        if (mIjkMediaPlayer == null || mSuspended || mDataSource == null || mRepreparing
+                || (state != STATE_PAUSED && state != STATE_PREPARED && state != STATE_COMPLETED))
+            return false;
+        mSuspendedPosition = state == STATE_COMPLETED ? 0 : mIjkMediaPlayer.getCurrentPosition();
+        mSuspendedDuration = mIjkMediaPlayer.getDuration();
+        mHandler.removeCallbacks(mFirstFrameWatchdog);
+        mIjkMediaPlayer.reset();
+        // native reset 时已关闭数据源，块缓存随之释放
+        mBlockCache = null;
+        mSuspended = true;
+        return true;
+    }
+
+    /**
+     * 从挂起的位置重新准备，必须在播放器线程上调用
+     *
+     * @param play 准备完成后是否继续播放
+     * @return 之前是否处于挂起状态
+     */
+    boolean restore(boolean play) {
+        if (!mSuspended)
+            return false;
+        mSuspended = false;
+        mLastUsedAt = SystemClock.elapsedRealtime();
+        mEngine.onDecoderAcquired(this);
+        reprepare(mSuspendedPosition, play);
+        return true;
+    }
+
+    boolean isSuspended() {
+        return mSuspended;
+    }
+
+    long getLastUsedAt() {
+        return mLastUsedAt;
+    }
+
     public long getCurrentPosition() {
         if (mIjkMediaPlayer == null)
             return 0;
-            
-        return mIjkMediaPlayer.getCurrentPosition();
+        if (mSuspended)
+            return mSuspendedPosition;
+
+        long position = mIjkMediaPlayer.getCurrentPosition();
+        if (mState == STATE_STARTED && !mBuffering && !mRepreparing)
+            mStateCell.reanchor(position);
+        return position;
     }
 
     public long getDuration() {
         if (mIjkMediaPlayer == null)
             return 0;
+        if (mSuspended)
+            return mSuspendedDuration;
             
         return mIjkMediaPlayer.getDuration();
     }
@@ -281,10 +859,28 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
         if (mIjkMediaPlayer == null)
             return;
             
+        if (mState == STATE_INITIALIZED) {
+            // 还没开始准备，直接从这个位置开始准备，不记录到选项里以免影响重新准备
+            mIjkMediaPlayer.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "seek-at-start", msec);
+            mStateCell.update(mState, msec, 0, false);
+            return;
+        }
         if (mState == STATE_COMPLETED)
             onStateChanged(STATE_PAUSED, mState);
             
+        mStats.onSeekStart();
+        mLastUsedAt = SystemClock.elapsedRealtime();
+        if (mSuspended) {
+            // 直接从目标位置恢复，准备完成时通知 seek 完成
+            mSuspendedPosition = msec;
+            mSeekOnRestore = true;
+            restore(false);
+            mStateCell.update(mState, msec, getDuration(), false);
+            return;
+        }
         mIjkMediaPlayer.seekTo(msec);
+        // seek 完成前按目标位置返回
+        mStateCell.update(mState, msec, getDuration(), false);
     }
 
     public void setLoopCount(int loopCount) {
@@ -299,11 +895,14 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
             return;
             
         mIjkMediaPlayer.setSpeed(speed);
+        mStateCell.setSpeed(speed, getCurrentPosition());
     }
 
     public int getVideoWidth() {
         if (mIjkMediaPlayer == null)
             return 0;
+        if (mSuspended)
+            return mWidth;
             
         return mIjkMediaPlayer.getVideoWidth();
     }
@@ -311,6 +910,8 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
     public int getVideoHeight() {
         if (mIjkMediaPlayer == null)
             return 0;
+        if (mSuspended)
+            return mHeight;
             
         return mIjkMediaPlayer.getVideoHeight();
     }
@@ -319,6 +920,7 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
         if (mIjkMediaPlayer == null)
             return;
             
+        mIjkOptions.add(new IjkOption(category, name, value, 0));
         mIjkMediaPlayer.setOption(category, name, value);
     }
 
@@ -326,6 +928,7 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
         if (mIjkMediaPlayer == null)
             return;
             
+        mIjkOptions.add(new IjkOption(category, name, null, value));
         mIjkMediaPlayer.setOption(category, name, value);
     }
 
@@ -352,8 +955,20 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
         // }
     }
 
+    /**
+     * 切换到 SurfaceView 时释放之前持有的 SurfaceTexture
+     */
     public void setRenderType(int type) {
-        // 在React Native中，我们使用SurfaceView
+        if (type == mRenderType)
+            return;
+        mRenderType = type;
+        if (type != RENDER_TEXTURE_VIEW) {
+            releaseTexture();
+        }
+    }
+
+    public int getRenderType() {
+        return mRenderType;
     }
 
     // 设置监听器
@@ -388,10 +1003,39 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
     // IMediaPlayer.OnPreparedListener
     @Override
     public void onPrepared(IMediaPlayer mp) {
+        mStats.onPrepared();
+        resolveVideoDecoder();
+        if (mHardwareActive && mVideoCodec != null && mEngine.context() != null
+                && !DecoderCapabilityCache.get(mEngine.context()).isHardwareAllowed(mVideoCodec, mVideoBucket)) {
+            // 这个分辨率之前硬解失败过，直接改用软解
+            fallbackToSoftware(false);
+            return;
+        }
+        if (mRepreparing) {
+            mRepreparing = false;
+            // 首次准备中途改用软解时，仍按正常流程通知准备完成
+            if (mState != STATE_ASYNC_PREPARING) {
+                if (mStartAfterPrepared) {
+                    mIjkMediaPlayer.start();
+                    if (mHardwareActive)
+                        armFirstFrameWatchdog();
+                }
+                publishState();
+                if (mSeekOnRestore) {
+                    mSeekOnRestore = false;
+                    onSeekComplete(mp);
+                }
+                return;
+            }
+        }
         onStateChanged(STATE_PREPARED, mState);
         if (mOnPreparedListener != null) {
             mOnPreparedListener.onPrepared(mp);
         }
+        if (mPlayWhenPrepared) {
+            mPlayWhenPrepared = false;
+            start();
+        }
     }
 
     // IMediaPlayer.OnCompletionListener
@@ -406,6 +1050,7 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
     // IMediaPlayer.OnBufferingUpdateListener
     @Override
     public void onBufferingUpdate(IMediaPlayer mp, int percent) {
+        mStateCell.setBufferedPosition(getDuration() * percent / 100);
         if (mOnBufferingUpdateListener != null) {
             mOnBufferingUpdateListener.onBufferingUpdate(mp, percent);
         }
@@ -414,6 +1059,12 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
     // IMediaPlayer.OnSeekCompleteListener
     @Override
     public void onSeekComplete(IMediaPlayer mp) {
+        if (mRedrawSeek) {
+            mRedrawSeek = false;
+            return;
+        }
+        mStats.onSeekComplete();
+        publishState();
         if (mOnSeekCompleteListener != null) {
             mOnSeekCompleteListener.onSeekComplete(mp);
         }
@@ -422,6 +1073,13 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
     // IMediaPlayer.OnErrorListener
     @Override
     public boolean onError(IMediaPlayer mp, int what, int extra) {
+        mRepreparing = false;
+        if (mHardwareActive && isDecoderError(extra)) {
+            Log.w(TAG, "hardware decode error " + what + "/" + extra + ", fall back to software");
+            fallbackToSoftware(true);
+            return true;
+        }
+        mHandler.removeCallbacks(mFirstFrameWatchdog);
         onStateChanged(STATE_ERROR, mState);
         if (mOnErrorListener != null) {
             return mOnErrorListener.onError(mp, what, extra);
@@ -432,6 +1090,27 @@ public class FijkPlayer implements IMediaPlayer.OnPreparedListener,
     // IMediaPlayer.OnInfoListener
     @Override
     public boolean onInfo(IMediaPlayer mp, int what, int extra) {
+        switch (what) {
+            case IMediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
+                mStats.onVideoRenderingStart();
+                mFirstFrameRendered = true;
+                mHandler.removeCallbacks(mFirstFrameWatchdog);
+                publishState();
+                break;
+            case IMediaPlayer.MEDIA_INFO_AUDIO_RENDERING_START:
+                mStats.onAudioRenderingStart();
+                break;
+            case IMediaPlayer.MEDIA_INFO_BUFFERING_START:
+                mStats.onBufferingStart();
+                mBuffering = true;
+                publishState();
+                break;
+            case IMediaPlayer.MEDIA_INFO_BUFFERING_END:
+                mStats.onBufferingEnd();
+                mBuffering = false;
+                publishState();
+                break;
+        }
         if (mOnInfoListener != null) {
             return mOnInfoListener.onInfo(mp, what, extra);
         }
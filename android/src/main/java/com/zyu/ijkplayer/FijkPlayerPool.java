@@ -0,0 +1,201 @@
+package com.zyu.ijkplayer;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预先创建好的播放器池，createPlayer 直接取用，releasePlayer 时 reset 后放回，
+ * 列表滑动时不再需要同步创建 IjkMediaPlayer
+ */
+class FijkPlayerPool {
+    private static final String TAG = "FijkPlayerPool";
+
+    final static int DEFAULT_MIN_SIZE = 0;
+    final static int DEFAULT_MAX_SIZE = 2;
+    final static long DEFAULT_IDLE_TIMEOUT_MS = 30 * 1000;
+
+    interface Factory {
+        FijkPlayer create();
+    }
+
+    private static class Slot {
+        final FijkPlayer player;
+        final long idleSince;
+
+        Slot(FijkPlayer player, long idleSince) {
+            this.player = player;
+            this.idleSince = idleSince;
+        }
+    }
+
+    private final Factory mFactory;
+    private final Executor mWarmExecutor;
+    private final PlayerReaper mReaper;
+    // 头部是最近放回的播放器，淘汰从尾部开始
+    private final ArrayDeque<Slot> mIdle = new ArrayDeque<>();
+    private final ScheduledExecutorService mTrimmer;
+    private ScheduledFuture<?> mTrimTask;
+    private int mMinSize = DEFAULT_MIN_SIZE;
+    private int mMaxSize = DEFAULT_MAX_SIZE;
+    private long mIdleTimeoutMs = DEFAULT_IDLE_TIMEOUT_MS;
+    private int mWarming = 0;
+
+    /**
+     * @param warmExecutor 预创建播放器所在的线程，IjkMediaPlayer 的回调会投递到创建线程的 Looper
+     * @param reaper       淘汰的播放器交给它在后台释放
+     */
+    FijkPlayerPool(Factory factory, Executor warmExecutor, PlayerReaper reaper) {
+        mFactory = factory;
+        mWarmExecutor = warmExecutor;
+        mReaper = reaper;
+        mTrimmer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ijk-pool-trim");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduleTrim();
+    }
+
+    synchronized void configure(int minSize, int maxSize, long idleTimeoutMs) {
+        mMaxSize = Math.max(0, maxSize);
+        mMinSize = Math.max(0, Math.min(minSize, mMaxSize));
+        mIdleTimeoutMs = Math.max(0, idleTimeoutMs);
+        scheduleTrim();
+        trim();
+        warm();
+    }
+
+    // 按当前的空闲超时重新安排定时淘汰，超时为 0 表示不按时间淘汰
+    private synchronized void scheduleTrim() {
+        if (mTrimTask != null) {
+            mTrimTask.cancel(false);
+            mTrimTask = null;
+        }
+        if (mIdleTimeoutMs > 0) {
+            long period = Math.max(1000, mIdleTimeoutMs / 2);
+            mTrimTask = mTrimmer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    trim();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 取出一个空闲播放器，池为空时返回 null
+     */
+    FijkPlayer acquire() {
+        FijkPlayer player = null;
+        synchronized (this) {
+            Slot slot = mIdle.pollFirst();
+            if (slot != null)
+                player = slot.player;
+        }
+        if (player != null)
+            player.renewId();
+        warm();
+        return player;
+    }
+
+    /**
+     * 重置播放器并放回池中，池已满时返回 false，由调用方释放
+     */
+    boolean recycle(FijkPlayer player) {
+        synchronized (this) {
+            if (mIdle.size() >= mMaxSize)
+                return false;
+        }
+        player.recycle();
+        synchronized (this) {
+            if (mIdle.size() >= mMaxSize)
+                return false;
+            mIdle.addFirst(new Slot(player, SystemClock.elapsedRealtime()));
+        }
+        return true;
+    }
+
+    synchronized int idleCount() {
+        return mIdle.size();
+    }
+
+    private void warm() {
+        final int count;
+        synchronized (this) {
+            count = mMinSize - mIdle.size() - mWarming;
+            if (count <= 0)
+                return;
+            mWarming += count;
+        }
+        mWarmExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < count; i++) {
+                    FijkPlayer player = mFactory.create();
+                    boolean keep;
+                    synchronized (FijkPlayerPool.this) {
+                        mWarming--;
+                        keep = mIdle.size() < mMaxSize;
+                        if (keep)
+                            mIdle.addLast(new Slot(player, SystemClock.elapsedRealtime()));
+                    }
+                    if (!keep)
+                        mReaper.release(player);
+                }
+            }
+        });
+    }
+
+    /**
+     * 释放超过最小数量且空闲超时的播放器
+     */
+    void trim() {
+        List<FijkPlayer> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = SystemClock.elapsedRealtime();
+            Iterator<Slot> it = mIdle.descendingIterator();
+            while (it.hasNext() && mIdle.size() > mMinSize) {
+                Slot slot = it.next();
+                if (mIdle.size() > mMaxSize || (mIdleTimeoutMs > 0 && now - slot.idleSince >= mIdleTimeoutMs)) {
+                    it.remove();
+                    evicted.add(slot.player);
+                }
+            }
+        }
+        for (FijkPlayer player : evicted) {
+            mReaper.release(player);
+        }
+        if (!evicted.isEmpty())
+            Log.d(TAG, "trim idle players: " + evicted.size());
+    }
+
+    /**
+     * 释放所有空闲播放器，之后仍可继续使用
+     */
+    void clear() {
+        List<FijkPlayer> evicted = new ArrayList<>();
+        synchronized (this) {
+            for (Slot slot : mIdle) {
+                evicted.add(slot.player);
+            }
+            mIdle.clear();
+        }
+        for (FijkPlayer player : evicted) {
+            mReaper.release(player);
+        }
+    }
+}
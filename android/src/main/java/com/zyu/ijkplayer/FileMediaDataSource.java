@@ -28,39 +28,132 @@ import android.util.Log;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 import tv.danmaku.ijk.media.player.misc.IMediaDataSource;
 
 class FileMediaDataSource implements IMediaDataSource {
-    private RandomAccessFile mFile;
+
+    // 读取策略：seek + read 共享文件指针
+    final static int MODE_RANDOM_ACCESS = 0;
+    // 读取策略：按窗口映射文件，从 MappedByteBuffer 直接拷贝
+    final static int MODE_MAPPED = 1;
+    // 读取策略：FileChannel 定位读，不依赖文件指针
+    final static int MODE_CHANNEL = 2;
+
+    // 单个映射窗口大小，32 位进程地址空间有限，分段映射
+    private final static int MAP_WINDOW_SIZE = 32 * 1024 * 1024;
+    // 超过该大小的文件不做映射，退化为定位读
+    private final static long MAX_MAPPED_SIZE = 512L * 1024 * 1024;
+
+    private volatile RandomAccessFile mFile;
+    // close() 可能与 ijk 读线程并发，读取时先取到局部变量再判空
+    private volatile FileChannel mChannel;
+    private MappedByteBuffer[] mWindows;
     private long mFileSize;
+    private int mMode;
 
     public FileMediaDataSource(File file) {
+        this(file, MODE_MAPPED);
+    }
+
+    public FileMediaDataSource(File file, int mode) {
         try {
             mFile = new RandomAccessFile(file, "r");
             mFileSize = mFile.length();
+            mChannel = mFile.getChannel();
         } catch (IOException e) {
             mFile = null;
             mFileSize = -1;
             Log.e("DataSource", "failed to open RandomAccess" + e.getMessage());
         }
+        if (mode == MODE_MAPPED && mFileSize > MAX_MAPPED_SIZE)
+            mode = MODE_CHANNEL;
+        if (mode == MODE_MAPPED && mFileSize > 0)
+            mWindows = new MappedByteBuffer[(int) ((mFileSize - 1) / MAP_WINDOW_SIZE + 1)];
+        mMode = mode;
+    }
+
+    int getMode() {
+        return mMode;
     }
 
     @Override
     public int readAt(long position, byte[] buffer, int offset, int size) {
         if (size == 0)
             return 0;
-        int length = -1;
-        if (mFile != null) {
+        if (mFile == null || position >= mFileSize)
+            return -1;
+        try {
+            switch (mMode) {
+                case MODE_MAPPED:
+                    return readMapped(position, buffer, offset, size);
+                case MODE_CHANNEL:
+                    FileChannel channel = mChannel;
+                    if (channel == null)
+                        return -1;
+                    return channel.read(ByteBuffer.wrap(buffer, offset, size), position);
+                default:
+                    return readRandomAccess(position, buffer, offset, size);
+            }
+        } catch (IOException e) {
+            Log.e("DataSource", "failed to read" + e.getMessage());
+        }
+        return -1;
+    }
+
+    private synchronized int readRandomAccess(long position, byte[] buffer, int offset, int size)
+            throws IOException {
+        RandomAccessFile file = mFile;
+        if (file == null)
+            return -1;
+        if (file.getFilePointer() != position)
+            file.seek(position);
+        return file.read(buffer, offset, size);
+    }
+
+    private int readMapped(long position, byte[] buffer, int offset, int size) throws IOException {
+        int length = 0;
+        while (length < size && position < mFileSize) {
+            int index = (int) (position / MAP_WINDOW_SIZE);
+            MappedByteBuffer window = mapWindow(index);
+            if (window == null) {
+                FileChannel channel = mChannel;
+                if (channel == null)
+                    return length > 0 ? length : -1;
+                // 映射失败（如地址空间不足），之后统一走定位读
+                mMode = MODE_CHANNEL;
+                int read = channel.read(ByteBuffer.wrap(buffer, offset + length, size - length), position);
+                return read < 0 ? (length > 0 ? length : -1) : length + read;
+            }
+            // duplicate 出独立的 position，读线程之间互不影响
+            ByteBuffer view = window.duplicate();
+            view.position((int) (position - (long) index * MAP_WINDOW_SIZE));
+            int count = Math.min(size - length, view.remaining());
+            view.get(buffer, offset + length, count);
+            length += count;
+            position += count;
+        }
+        return length;
+    }
+
+    private synchronized MappedByteBuffer mapWindow(int index) {
+        if (mWindows == null)
+            return null;
+        MappedByteBuffer window = mWindows[index];
+        if (window == null && mChannel != null) {
+            long start = (long) index * MAP_WINDOW_SIZE;
+            long length = Math.min(MAP_WINDOW_SIZE, mFileSize - start);
             try {
-                if (mFile.getFilePointer() != position)
-                    mFile.seek(position);
-                length = mFile.read(buffer, 0, size);
+                window = mChannel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                mWindows[index] = window;
             } catch (IOException e) {
-                Log.e("DataSource", "failed to read" + e.getMessage());
+                Log.e("DataSource", "failed to map" + e.getMessage());
             }
         }
-        return length;
+        return window;
     }
 
     @Override
@@ -70,11 +163,17 @@ class FileMediaDataSource implements IMediaDataSource {
 
     @Override
     public void close() {
-        if (mFile != null) {
+        RandomAccessFile file;
+        synchronized (this) {
+            file = mFile;
+            mWindows = null;
+            mChannel = null;
+            mFile = null;
+        }
+        if (file != null) {
             try {
-                mFile.close();
+                file.close();
                 mFileSize = 0;
-                mFile = null;
             } catch (IOException e) {
                 Log.e("DataSource", "failed to close" + e.getMessage());
             }
@@ -0,0 +1,403 @@
+package com.zyu.ijkplayer;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HLS 自适应码率。经本地代理把多码率主列表换成一个虚拟的媒体列表，
+ * 每个分片请求到来时按规则选出码率，再去该码率的子列表取同一序号的分片，所以只在分片边界切换；
+ * 带宽由代理实际从源站下载分片的速度估算
+ *
+ * 要求各码率分片序号对齐，不支持加密、fMP4、字节范围分片和独立音轨，不满足时按原列表播放
+ */
+class HlsAbrController {
+    private static final String TAG = "HlsAbrController";
+    private static final Pattern BANDWIDTH_PATTERN = Pattern.compile("[:,]BANDWIDTH=(\\d+)");
+    private static final Pattern RESOLUTION_PATTERN = Pattern.compile("RESOLUTION=(\\d+)x(\\d+)");
+    // 太小的下载受连接建立时间影响大，不计入估计
+    private static final long MIN_SAMPLE_BYTES = 16 * 1024;
+    private static final double FAST_HALF_LIFE_S = 2;
+    private static final double SLOW_HALF_LIFE_S = 5;
+
+    // 上一次播放结束时的带宽估计，用于下一次起播选档
+    private static volatile long sLastEstimate = 0;
+
+    /**
+     * 选档规则
+     */
+    static class Rules {
+        // 起播档位，-1 时按上次的带宽估计选择
+        int startupIndex = -1;
+        // 只按估计带宽的这个比例选档，留出余量
+        float bandwidthFraction = 0.75f;
+        // 缓冲低于此值时不升档
+        long minBufferForUpMs = 10000;
+        // 缓冲高于此值时不降档
+        long maxBufferForDownMs = 25000;
+        // 缓冲低于此值时至少降一档
+        long panicBufferMs = 3000;
+        // 最高码率，0 不限制
+        long maxBitrate = 0;
+    }
+
+    interface BufferProbe {
+        /**
+         * 已缓冲可播放的时长，还没开始播放时返回 -1
+         */
+        long bufferedMs();
+    }
+
+    private static class Variant {
+        final long bandwidth;
+        final int width;
+        final int height;
+        final String url;
+        // 最近一次读取的子列表：分片序号 -> 源地址
+        final Map<Long, String> segments = new HashMap<>();
+        long lastSequence = -1;
+        boolean ended = false;
+
+        Variant(long bandwidth, int width, int height, String url) {
+            this.bandwidth = bandwidth;
+            this.width = width;
+            this.height = height;
+            this.url = url;
+        }
+    }
+
+    final int id;
+    private final String mMasterUrl;
+    private final Rules mRules;
+    private final BufferProbe mProbe;
+
+    private List<Variant> mVariants;
+    // 主列表不满足要求，按原列表播放
+    private boolean mUnsupported = false;
+    private int mCurrent = -1;
+    private String mSegmentExt = ".ts";
+
+    private double mFastEstimate = 0;
+    private double mSlowEstimate = 0;
+    private double mSampledSeconds = 0;
+    private long mSwitchCount = 0;
+    private long mSegmentCount = 0;
+
+    HlsAbrController(int id, String masterUrl, Rules rules, BufferProbe probe) {
+        this.id = id;
+        mMasterUrl = masterUrl;
+        mRules = rules;
+        mProbe = probe;
+    }
+
+    String getMasterUrl() {
+        return mMasterUrl;
+    }
+
+    /**
+     * 生成虚拟媒体列表，分片地址指向 segmentBase + 序号；主列表不满足要求时返回 null
+     */
+    String buildPlaylist(String segmentBase) throws IOException {
+        ensureVariants();
+        if (mUnsupported)
+            return null;
+        Variant reference;
+        synchronized (this) {
+            if (mCurrent < 0)
+                mCurrent = startupIndex();
+            reference = mVariants.get(mCurrent);
+        }
+        URL[] finalUrl = new URL[1];
+        String text = HttpCacheProxy.fetchText(reference.url, NO_CALLBACK, finalUrl);
+        StringBuilder sb = new StringBuilder();
+        long sequence = 0;
+        boolean segmentExtKnown = false;
+        for (String line : text.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("#EXT-X-KEY") || trimmed.startsWith("#EXT-X-MAP")
+                    || trimmed.startsWith("#EXT-X-BYTERANGE")) {
+                markUnsupported("unsupported tag " + trimmed);
+                return null;
+            }
+            if (trimmed.startsWith("#EXT-X-MEDIA-SEQUENCE:")) {
+                sequence = parseSequence(trimmed);
+                if (sequence < 0) {
+                    markUnsupported("bad media sequence " + trimmed);
+                    return null;
+                }
+            }
+            if (trimmed.length() > 0 && !trimmed.startsWith("#")) {
+                if (!segmentExtKnown) {
+                    mSegmentExt = extensionOf(HttpCacheProxy.resolve(finalUrl[0], trimmed));
+                    segmentExtKnown = true;
+                }
+                sb.append(segmentBase).append(sequence).append(mSegmentExt);
+                sequence++;
+            } else {
+                sb.append(line);
+            }
+            sb.append('\n');
+        }
+        parseMediaPlaylist(reference, text, finalUrl[0]);
+        return sb.toString();
+    }
+
+    /**
+     * 为序号为 sequence 的分片选择码率，返回源地址，找不到时返回 null
+     */
+    String selectSegment(long sequence) throws IOException {
+        ensureVariants();
+        if (mUnsupported)
+            return null;
+        int target;
+        int current;
+        synchronized (this) {
+            if (mCurrent < 0)
+                mCurrent = startupIndex();
+            current = mCurrent;
+            target = mSegmentCount == 0 ? current : selectIndex(current);
+        }
+        String url;
+        try {
+            url = segmentUrl(mVariants.get(target), sequence);
+        } catch (IOException e) {
+            // 目标码率的子列表读取或解析失败，留在当前码率
+            if (target == current)
+                throw e;
+            url = null;
+        }
+        if (url == null && target != current) {
+            // 目标码率里没有这个序号，留在当前码率
+            target = current;
+            url = segmentUrl(mVariants.get(current), sequence);
+        }
+        synchronized (this) {
+            if (url != null) {
+                if (target != mCurrent) {
+                    Log.i(TAG, "switch variant " + mCurrent + " -> " + target + " at segment " + sequence);
+                    mSwitchCount++;
+                }
+                mCurrent = target;
+                mSegmentCount++;
+            }
+        }
+        return url;
+    }
+
+    /**
+     * 代理从源站下载分片后回调，按下载耗时加权更新快、慢两个滑动平均
+     */
+    synchronized void onTransfer(long bytes, long elapsedMs) {
+        if (bytes < MIN_SAMPLE_BYTES || elapsedMs <= 0)
+            return;
+        double seconds = elapsedMs / 1000.0;
+        double bitsPerSecond = bytes * 8 / seconds;
+        double fastAlpha = Math.pow(0.5, seconds / FAST_HALF_LIFE_S);
+        double slowAlpha = Math.pow(0.5, seconds / SLOW_HALF_LIFE_S);
+        mFastEstimate = bitsPerSecond * (1 - fastAlpha) + mFastEstimate * fastAlpha;
+        mSlowEstimate = bitsPerSecond * (1 - slowAlpha) + mSlowEstimate * slowAlpha;
+        mSampledSeconds += seconds;
+        sLastEstimate = getEstimate();
+    }
+
+    /**
+     * 当前带宽估计(bit/s)，没有样本时为 0
+     */
+    synchronized long getEstimate() {
+        if (mSampledSeconds <= 0)
+            return 0;
+        // 修正初始值为 0 带来的偏低，取两者中较保守的
+        double fast = mFastEstimate / (1 - Math.pow(0.5, mSampledSeconds / FAST_HALF_LIFE_S));
+        double slow = mSlowEstimate / (1 - Math.pow(0.5, mSampledSeconds / SLOW_HALF_LIFE_S));
+        return (long) Math.min(fast, slow);
+    }
+
+    private int startupIndex() {
+        if (mRules.startupIndex >= 0)
+            return Math.min(mRules.startupIndex, mVariants.size() - 1);
+        return indexForBandwidth(sLastEstimate);
+    }
+
+    private int selectIndex(int current) {
+        long estimate = getEstimate();
+        if (estimate <= 0)
+            return current;
+        int ideal = indexForBandwidth(estimate);
+        long buffered = mProbe.bufferedMs();
+        if (buffered < 0)
+            return ideal;
+        if (buffered < mRules.panicBufferMs && current > 0)
+            return Math.min(ideal, current - 1);
+        if (ideal > current && buffered < mRules.minBufferForUpMs)
+            return current;
+        if (ideal < current && buffered >= mRules.maxBufferForDownMs)
+            return current;
+        return ideal;
+    }
+
+    // 估计带宽能支撑的最高档，估计为 0 时选最低档
+    private int indexForBandwidth(long estimate) {
+        long allowed = (long) (estimate * mRules.bandwidthFraction);
+        int index = 0;
+        for (int i = 0; i < mVariants.size(); i++) {
+            long bandwidth = mVariants.get(i).bandwidth;
+            if (mRules.maxBitrate > 0 && bandwidth > mRules.maxBitrate)
+                break;
+            if (bandwidth <= allowed)
+                index = i;
+        }
+        return index;
+    }
+
+    private String segmentUrl(Variant variant, long sequence) throws IOException {
+        synchronized (variant) {
+            String url = variant.segments.get(sequence);
+            if (url == null && !(variant.ended && sequence <= variant.lastSequence)) {
+                // 还没读过这个子列表，或者直播列表需要刷新
+                URL[] finalUrl = new URL[1];
+                String text = HttpCacheProxy.fetchText(variant.url, NO_CALLBACK, finalUrl);
+                parseMediaPlaylist(variant, text, finalUrl[0]);
+                url = variant.segments.get(sequence);
+            }
+            return url;
+        }
+    }
+
+    // 序号不合法或溢出时返回 -1
+    private static long parseSequence(String tag) {
+        return HttpCacheProxy.parseLong(tag.substring("#EXT-X-MEDIA-SEQUENCE:".length()), -1);
+    }
+
+    private static void parseMediaPlaylist(Variant variant, String text, URL base) throws IOException {
+        synchronized (variant) {
+            long sequence = 0;
+            variant.segments.clear();
+            for (String line : text.split("\r?\n")) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith("#EXT-X-MEDIA-SEQUENCE:")) {
+                    sequence = parseSequence(trimmed);
+                    if (sequence < 0)
+                        throw new IOException("bad media sequence " + trimmed);
+                } else if (trimmed.startsWith("#EXT-X-ENDLIST")) {
+                    variant.ended = true;
+                } else if (trimmed.length() > 0 && !trimmed.startsWith("#")) {
+                    variant.segments.put(sequence, HttpCacheProxy.resolve(base, trimmed));
+                    variant.lastSequence = sequence;
+                    sequence++;
+                }
+            }
+        }
+    }
+
+    private void ensureVariants() throws IOException {
+        synchronized (this) {
+            if (mVariants != null || mUnsupported)
+                return;
+        }
+        URL[] finalUrl = new URL[1];
+        String text = HttpCacheProxy.fetchText(mMasterUrl, NO_CALLBACK, finalUrl);
+        List<Variant> variants = new ArrayList<>();
+        String pending = null;
+        for (String line : text.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("#EXT-X-STREAM-INF:")) {
+                pending = trimmed;
+            } else if (trimmed.startsWith("#EXT-X-MEDIA:") && trimmed.contains("URI=")) {
+                markUnsupported("alternate renditions");
+                return;
+            } else if (trimmed.startsWith("#EXTINF")) {
+                markUnsupported("not a master playlist");
+                return;
+            } else if (pending != null && trimmed.length() > 0 && !trimmed.startsWith("#")) {
+                Matcher bandwidth = BANDWIDTH_PATTERN.matcher(pending);
+                Matcher resolution = RESOLUTION_PATTERN.matcher(pending);
+                boolean hasResolution = resolution.find();
+                long rate = bandwidth.find() ? HttpCacheProxy.parseLong(bandwidth.group(1), -1) : 0;
+                if (rate < 0) {
+                    markUnsupported("bad bandwidth " + pending);
+                    return;
+                }
+                // 分辨率只用于展示，不合法时当作未知
+                long width = hasResolution ? HttpCacheProxy.parseLong(resolution.group(1), 0) : 0;
+                long height = hasResolution ? HttpCacheProxy.parseLong(resolution.group(2), 0) : 0;
+                if (width > Integer.MAX_VALUE || height > Integer.MAX_VALUE)
+                    width = height = 0;
+                variants.add(new Variant(rate, (int) width, (int) height,
+                        HttpCacheProxy.resolve(finalUrl[0], trimmed)));
+                pending = null;
+            }
+        }
+        if (variants.size() < 2) {
+            markUnsupported("less than two variants");
+            return;
+        }
+        Collections.sort(variants, new Comparator<Variant>() {
+            @Override
+            public int compare(Variant a, Variant b) {
+                return a.bandwidth < b.bandwidth ? -1 : (a.bandwidth == b.bandwidth ? 0 : 1);
+            }
+        });
+        synchronized (this) {
+            mVariants = variants;
+        }
+    }
+
+    private synchronized void markUnsupported(String reason) {
+        Log.i(TAG, "adaptive bitrate disabled for " + mMasterUrl + ": " + reason);
+        mUnsupported = true;
+    }
+
+    private static String extensionOf(String url) {
+        try {
+            String path = new URL(url).getPath();
+            int dot = path.lastIndexOf('.');
+            if (dot > path.lastIndexOf('/'))
+                return path.substring(dot).toLowerCase(Locale.US);
+        } catch (IOException ignored) {
+        }
+        return ".ts";
+    }
+
+    synchronized WritableMap toWritableMap() {
+        WritableMap map = Arguments.createMap();
+        map.putString("url", mMasterUrl);
+        map.putBoolean("active", mVariants != null && !mUnsupported);
+        map.putInt("currentIndex", mCurrent);
+        map.putDouble("bandwidthEstimate", getEstimate());
+        map.putDouble("switchCount", mSwitchCount);
+        WritableArray variants = Arguments.createArray();
+        if (mVariants != null) {
+            for (Variant variant : mVariants) {
+                WritableMap item = Arguments.createMap();
+                item.putDouble("bandwidth", variant.bandwidth);
+                item.putInt("width", variant.width);
+                item.putInt("height", variant.height);
+                variants.pushMap(item);
+            }
+        }
+        map.putArray("variants", variants);
+        return map;
+    }
+
+    private static final HttpCacheProxy.ConnectionCallback NO_CALLBACK = new HttpCacheProxy.ConnectionCallback() {
+        @Override
+        public void onConnection(HttpURLConnection conn) {
+        }
+    };
+}
@@ -34,6 +34,30 @@ final class HostOption {
 
     final static String ENABLE_SNAPSHOT = "enable-snapshot";
 
+    final static String FILE_READ_MODE = "file-read-mode";
+
+    final static String HTTP_CACHE = "http-cache";
+
+    final static String BLOCK_CACHE = "block-cache";
+    final static String BLOCK_CACHE_BLOCK_SIZE = "block-cache-block-size";
+    final static String BLOCK_CACHE_MAX_BYTES = "block-cache-max-bytes";
+    final static String BLOCK_CACHE_READ_AHEAD = "block-cache-read-ahead";
+
+    final static String HW_DECODE = "hw-decode";
+    final static String HW_FIRST_FRAME_TIMEOUT = "hw-first-frame-timeout";
+    final static int DEFAULT_HW_FIRST_FRAME_TIMEOUT = 3000;
+    // 调用方提供的视频尺寸，准备前用来判断分辨率档位
+    final static String HW_VIDEO_WIDTH = "hw-video-width";
+    final static String HW_VIDEO_HEIGHT = "hw-video-height";
+
+    final static String ABR = "abr";
+    final static String ABR_STARTUP_INDEX = "abr-startup-index";
+    final static String ABR_BANDWIDTH_FRACTION = "abr-bandwidth-fraction";
+    final static String ABR_MIN_BUFFER_FOR_UP = "abr-min-buffer-for-up";
+    final static String ABR_MAX_BUFFER_FOR_DOWN = "abr-max-buffer-for-down";
+    final static String ABR_PANIC_BUFFER = "abr-panic-buffer";
+    final static String ABR_MAX_BITRATE = "abr-max-bitrate";
+
     final private Map<String, Integer> mIntOption;
 
     final private Map<String, String> mStrOption;
@@ -45,6 +69,16 @@ final class HostOption {
     }
 
 
+    void clear() {
+        mIntOption.clear();
+        mStrOption.clear();
+    }
+
+    void copyFrom(HostOption other) {
+        mIntOption.putAll(other.mIntOption);
+        mStrOption.putAll(other.mStrOption);
+    }
+
     void addIntOption(String key, Integer value) {
         mIntOption.put(key, value);
     }
@@ -0,0 +1,667 @@
+package com.zyu.ijkplayer;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地 http 代理，播放器通过 127.0.0.1 访问网络视频，
+ * 已缓存的区间直接从磁盘返回，只向源站请求缺失的部分；
+ * m3u8 会被改写成经过代理的地址，分片同样落盘缓存
+ */
+class HttpCacheProxy {
+    private static final String TAG = "HttpCacheProxy";
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int READ_TIMEOUT_MS = 15000;
+    private static final int MAX_CONNECTIONS = 16;
+    private static final Pattern RANGE_PATTERN = Pattern.compile("bytes=(\\d*)-(\\d*)");
+    private static final Pattern URI_ATTR_PATTERN = Pattern.compile("URI=\"([^\"]+)\"");
+    private static final Pattern ABR_PATH_PATTERN = Pattern.compile("/abr/(\\d+)/(index\\.m3u8|(\\d+)\\.[^/]*)");
+
+    private final HttpCacheStore mStore;
+    private final ExecutorService mWorkers;
+    private ServerSocket mServer;
+    private Thread mAcceptThread;
+    // 自适应码率会话，虚拟列表和分片请求按路径中的 id 找到
+    private final ConcurrentHashMap<Integer, HlsAbrController> mAbrSessions = new ConcurrentHashMap<>();
+
+    HttpCacheProxy(HttpCacheStore store) {
+        mStore = store;
+        final AtomicInteger count = new AtomicInteger(0);
+        mWorkers = new ThreadPoolExecutor(0, MAX_CONNECTIONS, 30, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ijk-proxy-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    HttpCacheStore getStore() {
+        return mStore;
+    }
+
+    synchronized void start() throws IOException {
+        if (mServer != null)
+            return;
+        mServer = new ServerSocket(0, 16, InetAddress.getByName("127.0.0.1"));
+        mAcceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        }, "ijk-proxy-accept");
+        mAcceptThread.setDaemon(true);
+        mAcceptThread.start();
+        Log.i(TAG, "proxy listening on " + mServer.getLocalPort());
+    }
+
+    synchronized void shutdown() {
+        if (mServer != null) {
+            try {
+                mServer.close();
+            } catch (IOException e) {
+                Log.w(TAG, "failed to close server " + e.getMessage());
+            }
+            mServer = null;
+        }
+        mWorkers.shutdownNow();
+        mAbrSessions.clear();
+        mStore.close();
+    }
+
+    /**
+     * 把源地址转换为经过代理的地址，保留文件名方便 ffmpeg 按扩展名探测格式
+     */
+    synchronized String proxyUrl(String url) {
+        if (mServer == null)
+            return url;
+        String name = "media";
+        try {
+            String path = new URL(url).getPath();
+            int slash = path.lastIndexOf('/');
+            if (slash >= 0 && slash < path.length() - 1)
+                name = path.substring(slash + 1);
+            return "http://127.0.0.1:" + mServer.getLocalPort() + "/c/" + URLEncoder.encode(name, "UTF-8")
+                    + "?u=" + URLEncoder.encode(url, "UTF-8");
+        } catch (IOException e) {
+            return url;
+        }
+    }
+
+    /**
+     * 登记自适应码率会话，返回虚拟媒体列表的代理地址
+     */
+    synchronized String abrUrl(HlsAbrController abr) {
+        if (mServer == null)
+            return abr.getMasterUrl();
+        mAbrSessions.put(abr.id, abr);
+        return abrBase(abr) + "index.m3u8";
+    }
+
+    void removeAbr(HlsAbrController abr) {
+        mAbrSessions.remove(abr.id, abr);
+    }
+
+    private synchronized String abrBase(HlsAbrController abr) {
+        return "http://127.0.0.1:" + (mServer != null ? mServer.getLocalPort() : 0) + "/abr/" + abr.id + "/";
+    }
+
+    static boolean isHttp(String url) {
+        String lower = url.toLowerCase(Locale.US);
+        return lower.startsWith("http://") || lower.startsWith("https://");
+    }
+
+    private void acceptLoop() {
+        ServerSocket server;
+        synchronized (this) {
+            server = mServer;
+        }
+        while (server != null && !server.isClosed()) {
+            try {
+                final Socket socket = server.accept();
+                mWorkers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if (!server.isClosed())
+                    Log.w(TAG, "accept failed " + e.getMessage());
+            }
+        }
+    }
+
+    private static class Request {
+        String method;
+        String path;
+        String url;
+        long rangeStart = 0;
+        long rangeEnd = -1;
+        boolean hasRange = false;
+    }
+
+    private void handle(Socket socket) {
+        OutputStream out = null;
+        try {
+            socket.setSoTimeout(READ_TIMEOUT_MS);
+            Request request = parseRequest(socket.getInputStream());
+            out = socket.getOutputStream();
+            if (request != null && request.path.startsWith("/abr/")) {
+                serveAbr(request, out);
+            } else if (request == null || request.url == null) {
+                writeStatus(out, 400, "Bad Request");
+            } else if (!"GET".equals(request.method) && !"HEAD".equals(request.method)) {
+                writeStatus(out, 405, "Method Not Allowed");
+            } else if (isPlaylistUrl(request.url)) {
+                servePlaylist(request, out, null);
+            } else {
+                serveMedia(request, out);
+            }
+            out.flush();
+        } catch (IOException e) {
+            // 播放器 seek 时会主动断开连接，属于正常情况
+            Log.d(TAG, "connection closed " + e.getMessage());
+        } catch (RuntimeException e) {
+            // 异常的请求或源站响应只断开这一个连接，不能让工作线程崩溃
+            Log.w(TAG, "failed to serve request", e);
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private Request parseRequest(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "ISO-8859-1"));
+        String line = reader.readLine();
+        if (line == null)
+            return null;
+        String[] parts = line.split(" ");
+        if (parts.length < 2)
+            return null;
+        Request request = new Request();
+        request.method = parts[0];
+        int question = parts[1].indexOf('?');
+        request.path = question >= 0 ? parts[1].substring(0, question) : parts[1];
+        int query = parts[1].indexOf("?u=");
+        if (query >= 0) {
+            int end = parts[1].indexOf('&', query + 3);
+            String encoded = end > 0 ? parts[1].substring(query + 3, end) : parts[1].substring(query + 3);
+            try {
+                request.url = URLDecoder.decode(encoded, "UTF-8");
+            } catch (IllegalArgumentException e) {
+                // 转义不合法，按缺少地址返回 400
+                request.url = null;
+            }
+        }
+        while ((line = reader.readLine()) != null && line.length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && "range".equalsIgnoreCase(line.substring(0, colon).trim())) {
+                Matcher m = RANGE_PATTERN.matcher(line.substring(colon + 1).trim());
+                if (m.matches() && m.group(1).length() > 0) {
+                    // 数值溢出的 Range 忽略，按完整请求处理
+                    long start = parseLong(m.group(1), -1);
+                    long end = m.group(2).length() > 0 ? parseLong(m.group(2), -2) : -1;
+                    if (start >= 0 && end >= -1) {
+                        request.hasRange = true;
+                        request.rangeStart = start;
+                        request.rangeEnd = end;
+                    }
+                }
+            }
+        }
+        return request;
+    }
+
+    /**
+     * 解析头部中的数值，格式错误或溢出时返回 fallback
+     */
+    static long parseLong(String value, long fallback) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    static boolean isPlaylistUrl(String url) {
+        try {
+            return new URL(url).getPath().toLowerCase(Locale.US).endsWith(".m3u8");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isPlaylistMime(String mime) {
+        return mime != null && mime.toLowerCase(Locale.US).contains("mpegurl");
+    }
+
+    private void serveAbr(Request request, OutputStream out) throws IOException {
+        Matcher m = ABR_PATH_PATTERN.matcher(request.path);
+        long id = m.matches() ? parseLong(m.group(1), -1) : -1;
+        HlsAbrController abr = id >= 0 && id <= Integer.MAX_VALUE ? mAbrSessions.get((int) id) : null;
+        if (abr == null) {
+            writeStatus(out, 404, "Not Found");
+            return;
+        }
+        request.url = abr.getMasterUrl();
+        if (m.group(3) == null) {
+            String playlist;
+            try {
+                playlist = abr.buildPlaylist(abrBase(abr));
+            } catch (IOException e) {
+                writeStatus(out, 502, "Bad Gateway");
+                return;
+            }
+            if (playlist == null) {
+                // 不支持的列表按普通代理改写原列表
+                servePlaylist(request, out, null);
+                return;
+            }
+            byte[] body = playlist.getBytes("UTF-8");
+            String headers = "HTTP/1.1 200 OK\r\nContent-Type: application/vnd.apple.mpegurl\r\nContent-Length: "
+                    + body.length + "\r\nConnection: close\r\n\r\n";
+            out.write(headers.getBytes("ISO-8859-1"));
+            if (!"HEAD".equals(request.method))
+                out.write(body);
+            return;
+        }
+        long sequence = parseLong(m.group(3), -1);
+        if (sequence < 0) {
+            writeStatus(out, 404, "Not Found");
+            return;
+        }
+        String segment;
+        try {
+            segment = abr.selectSegment(sequence);
+        } catch (IOException e) {
+            writeStatus(out, 502, "Bad Gateway");
+            return;
+        }
+        if (segment == null) {
+            writeStatus(out, 404, "Not Found");
+            return;
+        }
+        request.url = segment;
+        serveMedia(request, out, abr);
+    }
+
+    private void serveMedia(Request request, OutputStream out) throws IOException {
+        serveMedia(request, out, null);
+    }
+
+    /**
+     * @param abr 不为 null 时把从源站下载的速度报告给它
+     */
+    private void serveMedia(Request request, OutputStream out, HlsAbrController abr) throws IOException {
+        HttpCacheStore.Entry entry = mStore.open(request.url);
+        try {
+            HttpURLConnection conn = null;
+            long originStart = 0;
+            if (entry.getLength() < 0 || entry.getMime() == null) {
+                // 第一次访问，需要从源站拿到总长度和类型
+                conn = openOrigin(request.url, request.rangeStart, request.rangeEnd);
+                if (isPlaylistMime(conn.getContentType())) {
+                    servePlaylist(request, out, conn);
+                    return;
+                }
+                originStart = describe(entry, conn, request.rangeStart);
+            }
+            long length = entry.getLength();
+            long start = request.rangeStart;
+            long end = request.rangeEnd;
+            if (length >= 0) {
+                if (end < 0 || end >= length)
+                    end = length - 1;
+                if (start > end && length > 0) {
+                    if (conn != null)
+                        conn.disconnect();
+                    writeStatus(out, 416, "Range Not Satisfiable");
+                    return;
+                }
+            }
+            writeMediaHeaders(out, request, entry, start, end);
+            if ("HEAD".equals(request.method)) {
+                if (conn != null)
+                    conn.disconnect();
+                return;
+            }
+            long position = start;
+            if (conn != null) {
+                // 首次请求的连接直接用来填补第一个缺口
+                long gapEnd = gapEnd(entry, position, end);
+                position = pump(entry, conn, originStart, position, gapEnd, out, abr);
+            }
+            while (end < 0 || position <= end) {
+                long cached = entry.cachedLength(position);
+                if (cached > 0) {
+                    long count = end < 0 ? cached : Math.min(cached, end - position + 1);
+                    long next = copyFromDisk(entry, position, count, out);
+                    if (next == position) {
+                        // 索引记录已缓存但数据文件读不到，去掉该区间后按缺口从源站下载
+                        mStore.invalidate(entry, position, position + cached);
+                        continue;
+                    }
+                    position = next;
+                } else {
+                    if (end < 0 && entry.getLength() >= 0 && position >= entry.getLength())
+                        break;
+                    long gapEnd = gapEnd(entry, position, end);
+                    HttpURLConnection gap = openOrigin(request.url, position, gapEnd);
+                    long gapStart = gap.getResponseCode() == HttpURLConnection.HTTP_PARTIAL ? position : 0;
+                    long next = pump(entry, gap, gapStart, position, gapEnd, out, abr);
+                    if (next <= position)
+                        break;
+                    position = next;
+                }
+            }
+        } finally {
+            mStore.release(entry);
+        }
+    }
+
+    private static long gapEnd(HttpCacheStore.Entry entry, long position, long end) {
+        long next = entry.nextCachedStart(position);
+        if (next > 0 && (end < 0 || next - 1 < end))
+            return next - 1;
+        return end;
+    }
+
+    private static HttpURLConnection openOrigin(String url, long start, long end) throws IOException {
+        // 列表里可能出现 file:、ftp: 等地址，只代理 http(s)
+        if (!isHttp(url))
+            throw new IOException("unsupported url " + url);
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+        conn.setInstanceFollowRedirects(true);
+        if (start > 0 || end >= 0) {
+            conn.setRequestProperty("Range", "bytes=" + start + "-" + (end >= 0 ? String.valueOf(end) : ""));
+        }
+        int code = conn.getResponseCode();
+        if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL) {
+            conn.disconnect();
+            throw new IOException("origin responded " + code + " for " + url);
+        }
+        return conn;
+    }
+
+    /**
+     * 从源站响应中取出总长度和类型，返回响应体在文件中的起始位置
+     */
+    private static long describe(HttpCacheStore.Entry entry, HttpURLConnection conn, long requested)
+            throws IOException {
+        String mime = conn.getContentType();
+        entry.setMime(mime != null ? mime : "application/octet-stream");
+        if (conn.getResponseCode() == HttpURLConnection.HTTP_PARTIAL) {
+            String contentRange = conn.getHeaderField("Content-Range");
+            if (contentRange != null) {
+                int slash = contentRange.lastIndexOf('/');
+                long length = slash > 0 ? parseLong(contentRange.substring(slash + 1), -1) : -1;
+                // "*" 或不合法的总长度当作未知
+                if (length >= 0)
+                    entry.setLength(length);
+            }
+            return requested;
+        }
+        String contentLength = conn.getHeaderField("Content-Length");
+        long length = contentLength != null ? parseLong(contentLength, -1) : -1;
+        if (length >= 0)
+            entry.setLength(length);
+        return 0;
+    }
+
+    /**
+     * 把源站响应体写入缓存，同时把 [position, end] 部分转发给播放器，返回转发后的位置
+     */
+    long pump(HttpCacheStore.Entry entry, HttpURLConnection conn, long originStart, long position,
+              long end, OutputStream out) throws IOException {
+        return pump(entry, conn, originStart, position, end, out, null);
+    }
+
+    private long pump(HttpCacheStore.Entry entry, HttpURLConnection conn, long originStart, long position,
+                      long end, OutputStream out, HlsAbrController abr) throws IOException {
+        // 只累计从源站读取的耗时，写给播放器时会按播放速度阻塞，计入会让估计收敛到当前码率
+        long readNanos = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long offset = originStart;
+        boolean clientAlive = out != null;
+        InputStream in = conn.getInputStream();
+        try {
+            while (end < 0 || offset <= end) {
+                long readStartedAt = System.nanoTime();
+                int read = in.read(buffer);
+                readNanos += System.nanoTime() - readStartedAt;
+                if (read <= 0)
+                    break;
+                if (end >= 0 && offset + read > end + 1)
+                    read = (int) (end + 1 - offset);
+                entry.write(offset, buffer, 0, read);
+                mStore.commit(entry, offset, offset + read);
+                if (clientAlive && offset + read > position) {
+                    int skip = (int) Math.max(0, position - offset);
+                    try {
+                        out.write(buffer, skip, read - skip);
+                    } catch (IOException e) {
+                        // 播放器已断开，已经在途的数据写完缓存即可
+                        clientAlive = false;
+                    }
+                    if (clientAlive)
+                        position = offset + read;
+                }
+                offset += read;
+                if (!clientAlive && out != null)
+                    break;
+            }
+            if (end < 0 && entry.getLength() < 0) {
+                entry.setLength(offset);
+            }
+        } finally {
+            in.close();
+            conn.disconnect();
+            if (abr != null)
+                abr.onTransfer(offset - originStart, readNanos / 1000000);
+        }
+        if (out == null)
+            return offset;
+        if (!clientAlive)
+            throw new IOException("client disconnected");
+        return position;
+    }
+
+    interface ConnectionCallback {
+        /**
+         * 每次向源站发起请求时回调，调用方可以在其他线程 disconnect 来取消下载
+         */
+        void onConnection(HttpURLConnection conn) throws IOException;
+    }
+
+    /**
+     * 不经过播放器直接把 [start, end] 下载进缓存，已缓存的部分跳过，返回下载结束的位置
+     */
+    long prefetch(String url, long start, long end, ConnectionCallback callback) throws IOException {
+        HttpCacheStore.Entry entry = mStore.open(url);
+        try {
+            long position = start;
+            while (true) {
+                long length = entry.getLength();
+                long last = length >= 0 ? (end < 0 ? length - 1 : Math.min(end, length - 1)) : end;
+                if (last >= 0 && position > last)
+                    break;
+                long cached = entry.cachedLength(position);
+                if (cached > 0) {
+                    position += cached;
+                    continue;
+                }
+                long gapEnd = gapEnd(entry, position, last);
+                HttpURLConnection conn = openOrigin(url, position, gapEnd);
+                callback.onConnection(conn);
+                long originStart;
+                if (entry.getLength() < 0 || entry.getMime() == null) {
+                    originStart = describe(entry, conn, position);
+                } else {
+                    originStart = conn.getResponseCode() == HttpURLConnection.HTTP_PARTIAL ? position : 0;
+                }
+                long next = pump(entry, conn, originStart, position, gapEnd, null);
+                if (next <= position)
+                    break;
+                position = next;
+            }
+            return position;
+        } finally {
+            mStore.release(entry);
+        }
+    }
+
+    /**
+     * 读取播放列表原文，不经过缓存
+     */
+    static String fetchText(String url, ConnectionCallback callback, URL[] finalUrl) throws IOException {
+        HttpURLConnection conn = openOrigin(url, 0, -1);
+        callback.onConnection(conn);
+        try {
+            if (finalUrl != null && finalUrl.length > 0)
+                finalUrl[0] = conn.getURL();
+            return readFully(conn.getInputStream());
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static long copyFromDisk(HttpCacheStore.Entry entry, long position, long count, OutputStream out)
+            throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (count > 0) {
+            int read = entry.read(position, buffer, 0, (int) Math.min(buffer.length, count));
+            if (read <= 0)
+                break;
+            out.write(buffer, 0, read);
+            position += read;
+            count -= read;
+        }
+        return position;
+    }
+
+    private static void writeMediaHeaders(OutputStream out, Request request, HttpCacheStore.Entry entry,
+                                          long start, long end) throws IOException {
+        long length = entry.getLength();
+        StringBuilder sb = new StringBuilder();
+        boolean partial = request.hasRange && length >= 0;
+        sb.append(partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n");
+        sb.append("Content-Type: ").append(entry.getMime()).append("\r\n");
+        sb.append("Accept-Ranges: bytes\r\n");
+        if (length >= 0) {
+            sb.append("Content-Length: ").append(end - start + 1).append("\r\n");
+            if (partial)
+                sb.append("Content-Range: bytes ").append(start).append('-').append(end).append('/')
+                        .append(length).append("\r\n");
+        }
+        sb.append("Connection: close\r\n\r\n");
+        out.write(sb.toString().getBytes("ISO-8859-1"));
+    }
+
+    private static void writeStatus(OutputStream out, int code, String message) throws IOException {
+        String response = "HTTP/1.1 " + code + " " + message + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n";
+        out.write(response.getBytes("ISO-8859-1"));
+    }
+
+    private void servePlaylist(Request request, OutputStream out, HttpURLConnection conn) throws IOException {
+        if (conn == null) {
+            try {
+                conn = openOrigin(request.url, 0, -1);
+            } catch (IOException e) {
+                writeStatus(out, 502, "Bad Gateway");
+                return;
+            }
+        }
+        byte[] body;
+        try {
+            String playlist = readFully(conn.getInputStream());
+            body = rewritePlaylist(playlist, conn.getURL()).getBytes("UTF-8");
+        } finally {
+            conn.disconnect();
+        }
+        String headers = "HTTP/1.1 200 OK\r\nContent-Type: application/vnd.apple.mpegurl\r\nContent-Length: "
+                + body.length + "\r\nConnection: close\r\n\r\n";
+        out.write(headers.getBytes("ISO-8859-1"));
+        if (!"HEAD".equals(request.method))
+            out.write(body);
+    }
+
+    /**
+     * 把播放列表中的分片、子列表和密钥地址全部改写为代理地址
+     */
+    String rewritePlaylist(String playlist, URL base) throws UnsupportedEncodingException {
+        StringBuilder sb = new StringBuilder();
+        for (String line : playlist.split("\r?\n")) {
+            String trimmed = line.trim();
+            if (trimmed.length() == 0) {
+                sb.append(line);
+            } else if (trimmed.startsWith("#")) {
+                Matcher m = URI_ATTR_PATTERN.matcher(line);
+                StringBuffer rewritten = new StringBuffer();
+                while (m.find()) {
+                    String uri = proxyUrl(resolve(base, m.group(1)));
+                    m.appendReplacement(rewritten, Matcher.quoteReplacement("URI=\"" + uri + "\""));
+                }
+                m.appendTail(rewritten);
+                sb.append(rewritten);
+            } else {
+                sb.append(proxyUrl(resolve(base, trimmed)));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    static String resolve(URL base, String uri) {
+        try {
+            return new URL(base, uri).toString();
+        } catch (IOException e) {
+            return uri;
+        }
+    }
+
+    static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8 * 1024];
+        int read;
+        try {
+            while ((read = in.read(buffer)) > 0) {
+                bos.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return bos.toString("UTF-8");
+    }
+}
@@ -0,0 +1,513 @@
+package com.zyu.ijkplayer;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 网络视频的磁盘缓存，每个 url 一个稀疏数据文件，记录已缓存的字节区间，
+ * 索引持久化到 index 文件，总大小超出上限时按最近访问时间淘汰
+ *
+ * 同一目录在进程内只有一个实例，通过 {@link #obtain(File, long)} 获取，用完 {@link #close()}；
+ * JS 重新加载后新的模块拿到的仍是同一个实例，不会重新加载索引删掉正在读写的数据文件
+ */
+class HttpCacheStore {
+    private static final String TAG = "HttpCacheStore";
+    private static final String INDEX_FILE = "index";
+    private static final String INDEX_MAGIC = "ijk-http-cache 1";
+    private static final long SAVE_DELAY_MS = 2000;
+
+    final static long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final Map<String, HttpCacheStore> sStores = new HashMap<>();
+
+    private final File mDir;
+    private final long mMaxBytes;
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    private final ScheduledExecutorService mSaver;
+    // 串行化整个索引保存过程：定时保存、flush 和 close 会写同一个临时文件，且旧快照不能覆盖新快照
+    private final Object mSaveLock = new Object();
+    private long mTotalBytes = 0;
+    private boolean mSaveScheduled = false;
+    // obtain 的次数，归零时停止索引保存线程并从 sStores 中移除
+    private int mOwners = 0;
+
+    /**
+     * 单个 url 的缓存，区间和长度的访问都在 Entry 自身上同步
+     */
+    static class Entry {
+        final String key;
+        final String url;
+        final File file;
+        private final List<long[]> mRanges = new ArrayList<>();
+        private long mLength = -1;
+        private String mMime;
+        private long mLastAccess;
+        private int mRefs = 0;
+        private FileChannel mChannel;
+
+        Entry(String key, String url, File file) {
+            this.key = key;
+            this.url = url;
+            this.file = file;
+        }
+
+        synchronized long getLength() {
+            return mLength;
+        }
+
+        synchronized void setLength(long length) {
+            mLength = length;
+        }
+
+        synchronized String getMime() {
+            return mMime;
+        }
+
+        synchronized void setMime(String mime) {
+            mMime = mime;
+        }
+
+        synchronized long getLastAccess() {
+            return mLastAccess;
+        }
+
+        /**
+         * 从 position 开始连续已缓存的字节数
+         */
+        synchronized long cachedLength(long position) {
+            for (long[] range : mRanges) {
+                if (range[0] <= position && position < range[1])
+                    return range[1] - position;
+                if (range[0] > position)
+                    break;
+            }
+            return 0;
+        }
+
+        /**
+         * position 之后第一个已缓存区间的起点，没有则返回 -1
+         */
+        synchronized long nextCachedStart(long position) {
+            for (long[] range : mRanges) {
+                if (range[0] > position)
+                    return range[0];
+            }
+            return -1;
+        }
+
+        synchronized long cachedBytes() {
+            long bytes = 0;
+            for (long[] range : mRanges) {
+                bytes += range[1] - range[0];
+            }
+            return bytes;
+        }
+
+        synchronized boolean isComplete() {
+            return mLength > 0 && mRanges.size() == 1 && mRanges.get(0)[0] == 0 && mRanges.get(0)[1] >= mLength;
+        }
+
+        /**
+         * 从已缓存区间中去掉 [start, end)，返回去掉的字节数
+         */
+        synchronized long removeRange(long start, long end) {
+            if (end <= start)
+                return 0;
+            long before = cachedBytes();
+            List<long[]> ranges = new ArrayList<>();
+            for (long[] range : mRanges) {
+                if (range[1] <= start || range[0] >= end) {
+                    ranges.add(range);
+                    continue;
+                }
+                if (range[0] < start)
+                    ranges.add(new long[]{range[0], start});
+                if (range[1] > end)
+                    ranges.add(new long[]{end, range[1]});
+            }
+            mRanges.clear();
+            mRanges.addAll(ranges);
+            return before - cachedBytes();
+        }
+
+        /**
+         * 合并区间 [start, end)，返回新增的字节数
+         */
+        synchronized long addRange(long start, long end) {
+            if (end <= start)
+                return 0;
+            long before = cachedBytes();
+            int i = 0;
+            while (i < mRanges.size() && mRanges.get(i)[1] < start)
+                i++;
+            long newStart = start;
+            long newEnd = end;
+            while (i < mRanges.size() && mRanges.get(i)[0] <= end) {
+                long[] range = mRanges.remove(i);
+                newStart = Math.min(newStart, range[0]);
+                newEnd = Math.max(newEnd, range[1]);
+            }
+            mRanges.add(i, new long[]{newStart, newEnd});
+            return cachedBytes() - before;
+        }
+
+        private synchronized FileChannel channel() throws IOException {
+            if (mChannel == null) {
+                mChannel = new RandomAccessFile(file, "rw").getChannel();
+            }
+            return mChannel;
+        }
+
+        int read(long position, byte[] buffer, int offset, int size) throws IOException {
+            return channel().read(ByteBuffer.wrap(buffer, offset, size), position);
+        }
+
+        void write(long position, byte[] buffer, int offset, int size) throws IOException {
+            ByteBuffer src = ByteBuffer.wrap(buffer, offset, size);
+            FileChannel channel = channel();
+            while (src.hasRemaining()) {
+                channel.write(src, position + src.position() - offset);
+            }
+        }
+
+        private synchronized void closeChannel() {
+            if (mChannel != null) {
+                try {
+                    mChannel.close();
+                } catch (IOException e) {
+                    Log.w(TAG, "failed to close " + e.getMessage());
+                }
+                mChannel = null;
+            }
+        }
+
+        synchronized String encodeRanges() {
+            if (mRanges.isEmpty())
+                return "-";
+            StringBuilder sb = new StringBuilder();
+            for (long[] range : mRanges) {
+                if (sb.length() > 0)
+                    sb.append(',');
+                sb.append(range[0]).append('-').append(range[1]);
+            }
+            return sb.toString();
+        }
+
+        synchronized void decodeRanges(String ranges) {
+            mRanges.clear();
+            if ("-".equals(ranges))
+                return;
+            for (String range : ranges.split(",")) {
+                int dash = range.indexOf('-');
+                mRanges.add(new long[]{Long.parseLong(range.substring(0, dash)),
+                        Long.parseLong(range.substring(dash + 1))});
+            }
+        }
+    }
+
+    /**
+     * 获取 dir 对应的缓存，进程内已有该目录的实例时直接复用，maxBytes 以第一次创建时为准
+     */
+    static HttpCacheStore obtain(File dir, long maxBytes) {
+        String path = dir.getAbsolutePath();
+        synchronized (sStores) {
+            HttpCacheStore store = sStores.get(path);
+            if (store == null) {
+                store = new HttpCacheStore(dir, maxBytes);
+                sStores.put(path, store);
+            }
+            synchronized (store) {
+                store.mOwners++;
+            }
+            return store;
+        }
+    }
+
+    private HttpCacheStore(File dir, long maxBytes) {
+        mDir = dir;
+        mMaxBytes = maxBytes;
+        mSaver = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ijk-cache-index");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (!mDir.exists() && !mDir.mkdirs()) {
+            Log.e(TAG, "failed to create cache dir " + mDir);
+        }
+        loadIndex();
+    }
+
+    static String keyOf(String url) {
+        try {
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            byte[] digest = md5.digest(url.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b & 0xff));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    /**
+     * 打开 url 对应的缓存条目，使用期间不会被淘汰，用完需要 {@link #release(Entry)}
+     */
+    synchronized Entry open(String url) {
+        String key = keyOf(url);
+        Entry entry = mEntries.get(key);
+        if (entry == null) {
+            entry = new Entry(key, url, new File(mDir, key + ".data"));
+            mEntries.put(key, entry);
+        }
+        entry.mRefs++;
+        synchronized (entry) {
+            entry.mLastAccess = System.currentTimeMillis();
+        }
+        return entry;
+    }
+
+    synchronized void release(Entry entry) {
+        entry.mRefs--;
+        if (entry.mRefs <= 0) {
+            entry.mRefs = 0;
+            entry.closeChannel();
+        }
+        scheduleSave();
+    }
+
+    /**
+     * 缓存中是否已有该 url 的数据
+     */
+    synchronized boolean contains(String url) {
+        Entry entry = mEntries.get(keyOf(url));
+        return entry != null && entry.cachedBytes() > 0;
+    }
+
+    /**
+     * 写入数据后登记区间，并在超出容量时淘汰
+     */
+    void commit(Entry entry, long start, long end) {
+        long added = entry.addRange(start, end);
+        synchronized (this) {
+            mTotalBytes += added;
+            if (mTotalBytes > mMaxBytes)
+                evict();
+        }
+        scheduleSave();
+    }
+
+    synchronized long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    synchronized void clear() {
+        for (Entry entry : new ArrayList<>(mEntries.values())) {
+            if (entry.mRefs == 0)
+                remove(entry);
+        }
+        scheduleSave();
+    }
+
+    private void evict() {
+        List<Entry> entries = new ArrayList<>(mEntries.values());
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                long la = a.getLastAccess();
+                long lb = b.getLastAccess();
+                return la < lb ? -1 : (la == lb ? 0 : 1);
+            }
+        });
+        for (Entry entry : entries) {
+            if (mTotalBytes <= mMaxBytes)
+                break;
+            // 正在读写的条目暂时允许超出上限
+            if (entry.mRefs > 0)
+                continue;
+            remove(entry);
+        }
+    }
+
+    private void remove(Entry entry) {
+        mEntries.remove(entry.key);
+        mTotalBytes -= entry.cachedBytes();
+        entry.closeChannel();
+        if (entry.file.exists() && !entry.file.delete()) {
+            Log.w(TAG, "failed to delete " + entry.file);
+        }
+    }
+
+    private synchronized void scheduleSave() {
+        if (mSaveScheduled || mSaver.isShutdown())
+            return;
+        mSaveScheduled = true;
+        mSaver.schedule(new Runnable() {
+            @Override
+            public void run() {
+                saveIndex();
+            }
+        }, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void flush() {
+        saveIndex();
+    }
+
+    /**
+     * 释放一次 obtain，最后一个使用者关闭时保存索引并停止保存线程
+     */
+    void close() {
+        synchronized (sStores) {
+            boolean last;
+            synchronized (this) {
+                mOwners = Math.max(0, mOwners - 1);
+                last = mOwners == 0;
+            }
+            saveIndex();
+            if (last) {
+                sStores.remove(mDir.getAbsolutePath());
+                mSaver.shutdown();
+            }
+        }
+    }
+
+    /**
+     * 数据文件与索引不一致（被截断或删除）时，从索引中去掉读不到的区间，之后从源站重新下载
+     */
+    void invalidate(Entry entry, long start, long end) {
+        long removed = entry.removeRange(start, end);
+        if (removed > 0) {
+            Log.w(TAG, "cached range " + start + "-" + end + " of " + entry.key + " unreadable, dropped");
+            synchronized (this) {
+                mTotalBytes -= removed;
+            }
+            scheduleSave();
+        }
+    }
+
+    private void saveIndex() {
+        synchronized (mSaveLock) {
+            writeIndex();
+        }
+    }
+
+    private void writeIndex() {
+        List<String> lines = new ArrayList<>();
+        synchronized (this) {
+            mSaveScheduled = false;
+            for (Entry entry : mEntries.values()) {
+                if (entry.cachedBytes() == 0)
+                    continue;
+                String mime = entry.getMime();
+                lines.add(entry.key + "\t" + entry.getLength() + "\t" + entry.getLastAccess() + "\t"
+                        + (mime == null ? "-" : mime) + "\t" + entry.encodeRanges() + "\t" + entry.url);
+            }
+        }
+        File tmp = new File(mDir, INDEX_FILE + ".tmp");
+        BufferedWriter writer = null;
+        try {
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            writer.write(INDEX_MAGIC);
+            writer.newLine();
+            for (String line : lines) {
+                writer.write(line);
+                writer.newLine();
+            }
+            writer.close();
+            writer = null;
+            if (!tmp.renameTo(new File(mDir, INDEX_FILE))) {
+                Log.w(TAG, "failed to rename index");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "failed to save index " + e.getMessage());
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private synchronized void loadIndex() {
+        File index = new File(mDir, INDEX_FILE);
+        if (index.exists()) {
+            BufferedReader reader = null;
+            try {
+                reader = new BufferedReader(new InputStreamReader(new FileInputStream(index), "UTF-8"));
+                String line = reader.readLine();
+                if (INDEX_MAGIC.equals(line)) {
+                    while ((line = reader.readLine()) != null) {
+                        String[] fields = line.split("\t", 6);
+                        if (fields.length != 6)
+                            continue;
+                        Entry entry = new Entry(fields[0], fields[5], new File(mDir, fields[0] + ".data"));
+                        if (!entry.file.exists())
+                            continue;
+                        entry.mLength = Long.parseLong(fields[1]);
+                        entry.mLastAccess = Long.parseLong(fields[2]);
+                        entry.mMime = "-".equals(fields[3]) ? null : fields[3];
+                        entry.decodeRanges(fields[4]);
+                        mEntries.put(entry.key, entry);
+                        mTotalBytes += entry.cachedBytes();
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "failed to load index " + e.getMessage());
+            } finally {
+                if (reader != null) {
+                    try {
+                        reader.close();
+                    } catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+        // 清理不在索引中的数据文件
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(".data") && !mEntries.containsKey(name.substring(0, name.length() - 5))) {
+                    if (!file.delete())
+                        Log.w(TAG, "failed to delete " + file);
+                }
+            }
+        }
+        if (mTotalBytes > mMaxBytes)
+            evict();
+    }
+}
@@ -0,0 +1,64 @@
+package com.zyu.ijkplayer;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+
+/**
+ * IjkMediaPlayer 内部计数器的一次采样，每个播放器复用同一个对象
+ */
+class NativeStats {
+    long sampledAt;
+    long videoCachedDurationMs;
+    long audioCachedDurationMs;
+    long videoCachedBytes;
+    long audioCachedBytes;
+    long videoCachedPackets;
+    long audioCachedPackets;
+    long tcpSpeed;
+    long bitRate;
+    float dropFrameRate;
+    float decodeFps;
+    float outputFps;
+    long seekLoadDurationMs;
+    long trafficBytes;
+
+    synchronized void sample(IjkMediaPlayer mp) {
+        sampledAt = SystemClock.elapsedRealtime();
+        videoCachedDurationMs = mp.getVideoCachedDuration();
+        audioCachedDurationMs = mp.getAudioCachedDuration();
+        videoCachedBytes = mp.getVideoCachedBytes();
+        audioCachedBytes = mp.getAudioCachedBytes();
+        videoCachedPackets = mp.getVideoCachedPackets();
+        audioCachedPackets = mp.getAudioCachedPackets();
+        tcpSpeed = mp.getTcpSpeed();
+        bitRate = mp.getBitRate();
+        dropFrameRate = mp.getDropFrameRate();
+        decodeFps = mp.getVideoDecodeFramesPerSecond();
+        outputFps = mp.getVideoOutputFramesPerSecond();
+        seekLoadDurationMs = mp.getSeekLoadDuration();
+        trafficBytes = mp.getTrafficStatisticByteCount();
+    }
+
+    synchronized WritableMap toWritableMap() {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("sampledAt", sampledAt);
+        map.putDouble("videoCachedDurationMs", videoCachedDurationMs);
+        map.putDouble("audioCachedDurationMs", audioCachedDurationMs);
+        map.putDouble("videoCachedBytes", videoCachedBytes);
+        map.putDouble("audioCachedBytes", audioCachedBytes);
+        map.putDouble("videoCachedPackets", videoCachedPackets);
+        map.putDouble("audioCachedPackets", audioCachedPackets);
+        map.putDouble("tcpSpeed", tcpSpeed);
+        map.putDouble("bitRate", bitRate);
+        map.putDouble("dropFrameRate", dropFrameRate);
+        map.putDouble("decodeFps", decodeFps);
+        map.putDouble("outputFps", outputFps);
+        map.putDouble("seekLoadDurationMs", seekLoadDurationMs);
+        map.putDouble("trafficBytes", trafficBytes);
+        return map;
+    }
+}
@@ -0,0 +1,46 @@
+package com.zyu.ijkplayer;
+
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+
+/**
+ * 内置的 ijk 选项组合，setDataSource 的 options.profile 指定，
+ * 在用户传入的分类选项之前应用，同名选项以用户设置为准
+ */
+final class OptionProfile {
+
+    final static String LOW_LATENCY_LIVE = "lowLatencyLive";
+
+    private OptionProfile() {
+    }
+
+    /**
+     * @return 是否是已知的 profile
+     */
+    static boolean apply(FijkPlayer player, String profile) {
+        if (LOW_LATENCY_LIVE.equals(profile)) {
+            applyLowLatencyLive(player);
+            return true;
+        }
+        return false;
+    }
+
+    // RTMP/HTTP-FLV 直播，优先降低延迟，允许丢帧
+    private static void applyLowLatencyLive(FijkPlayer player) {
+        // 少探测数据，尽快开始解码
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "probesize", 16 * 1024);
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "analyzeduration", 100 * 1000);
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "fflags", "nobuffer");
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "flush_packets", 1);
+
+        // 不等缓冲水位，来多少播多少
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "packet-buffering", 0);
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "infbuf", 1);
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "framedrop", 5);
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "min-frames", 2);
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "sync-av-start", 0);
+        // seek 时直接丢弃已缓存的数据跳到关键帧
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "enable-accurate-seek", 0);
+
+        player.setOption(IjkMediaPlayer.OPT_CATEGORY_CODEC, "skip_loop_filter", 48);
+    }
+}
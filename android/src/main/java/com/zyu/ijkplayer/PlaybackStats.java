@@ -0,0 +1,155 @@
+package com.zyu.ijkplayer;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * 单次播放的 QoS 统计：首帧耗时、卡顿次数与时长、seek 耗时
+ *
+ * 记录只写基本类型字段和定长环形数组，不在播放过程中分配对象
+ */
+class PlaybackStats {
+    // 保留最近几次卡顿和 seek 的耗时
+    final static int HISTORY_SIZE = 16;
+
+    private long mDataSourceAt;
+    private long mPrepareAt;
+    private long mPreparedAt;
+    private long mFirstFrameAt;
+    private long mFirstAudioAt;
+
+    private long mBufferingStartAt;
+    private boolean mBufferingIsStall;
+    private int mRebufferCount;
+    private long mStallTotalMs;
+    private final long[] mStallHistory = new long[HISTORY_SIZE];
+
+    private long mSeekStartAt;
+    private int mSeekCount;
+    private long mSeekTotalMs;
+    private long mSeekMaxMs;
+    private final long[] mSeekHistory = new long[HISTORY_SIZE];
+
+    synchronized void reset() {
+        mDataSourceAt = 0;
+        mPrepareAt = 0;
+        mPreparedAt = 0;
+        mFirstFrameAt = 0;
+        mFirstAudioAt = 0;
+        mBufferingStartAt = 0;
+        mBufferingIsStall = false;
+        mRebufferCount = 0;
+        mStallTotalMs = 0;
+        mSeekStartAt = 0;
+        mSeekCount = 0;
+        mSeekTotalMs = 0;
+        mSeekMaxMs = 0;
+    }
+
+    synchronized void onDataSource() {
+        reset();
+        mDataSourceAt = SystemClock.elapsedRealtime();
+    }
+
+    synchronized void onPrepareAsync() {
+        mPrepareAt = SystemClock.elapsedRealtime();
+    }
+
+    synchronized void onPrepared() {
+        if (mPreparedAt == 0)
+            mPreparedAt = SystemClock.elapsedRealtime();
+    }
+
+    synchronized void onVideoRenderingStart() {
+        if (mFirstFrameAt == 0)
+            mFirstFrameAt = SystemClock.elapsedRealtime();
+    }
+
+    synchronized void onAudioRenderingStart() {
+        if (mFirstAudioAt == 0)
+            mFirstAudioAt = SystemClock.elapsedRealtime();
+    }
+
+    synchronized void onBufferingStart() {
+        if (mBufferingStartAt != 0)
+            return;
+        mBufferingStartAt = SystemClock.elapsedRealtime();
+        // 首帧之前和 seek 引起的缓冲不算卡顿
+        mBufferingIsStall = firstRenderAt() != 0 && mSeekStartAt == 0;
+    }
+
+    synchronized void onBufferingEnd() {
+        if (mBufferingStartAt == 0)
+            return;
+        if (mBufferingIsStall) {
+            long cost = SystemClock.elapsedRealtime() - mBufferingStartAt;
+            mStallHistory[mRebufferCount % HISTORY_SIZE] = cost;
+            mRebufferCount++;
+            mStallTotalMs += cost;
+        }
+        mBufferingStartAt = 0;
+        mBufferingIsStall = false;
+    }
+
+    synchronized void onSeekStart() {
+        mSeekStartAt = SystemClock.elapsedRealtime();
+    }
+
+    synchronized void onSeekComplete() {
+        if (mSeekStartAt == 0)
+            return;
+        long cost = SystemClock.elapsedRealtime() - mSeekStartAt;
+        mSeekHistory[mSeekCount % HISTORY_SIZE] = cost;
+        mSeekCount++;
+        mSeekTotalMs += cost;
+        if (cost > mSeekMaxMs)
+            mSeekMaxMs = cost;
+        mSeekStartAt = 0;
+    }
+
+    private long firstRenderAt() {
+        return mFirstFrameAt != 0 ? mFirstFrameAt : mFirstAudioAt;
+    }
+
+    private static long span(long from, long to) {
+        return from != 0 && to != 0 ? to - from : -1;
+    }
+
+    private static WritableArray history(long[] ring, int count) {
+        WritableArray array = Arguments.createArray();
+        int n = Math.min(count, HISTORY_SIZE);
+        for (int i = count - n; i < count; i++) {
+            array.pushDouble(ring[i % HISTORY_SIZE]);
+        }
+        return array;
+    }
+
+    /**
+     * 生成 JS 使用的统计结果，耗时单位为毫秒，未发生的阶段为 -1
+     */
+    synchronized WritableMap toWritableMap() {
+        long start = mDataSourceAt != 0 ? mDataSourceAt : mPrepareAt;
+        long stallTotal = mStallTotalMs;
+        if (mBufferingIsStall && mBufferingStartAt != 0) {
+            // 正在卡顿中，计入已经持续的时间
+            stallTotal += SystemClock.elapsedRealtime() - mBufferingStartAt;
+        }
+
+        WritableMap map = Arguments.createMap();
+        map.putDouble("prepareMs", span(mPrepareAt, mPreparedAt));
+        map.putDouble("timeToFirstFrameMs", span(start, mFirstFrameAt));
+        map.putDouble("timeToFirstAudioMs", span(start, mFirstAudioAt));
+        map.putInt("rebufferCount", mRebufferCount);
+        map.putDouble("stallTotalMs", stallTotal);
+        map.putBoolean("stalled", mBufferingIsStall);
+        map.putArray("recentStallsMs", history(mStallHistory, mRebufferCount));
+        map.putInt("seekCount", mSeekCount);
+        map.putDouble("seekAverageMs", mSeekCount == 0 ? -1 : (double) mSeekTotalMs / mSeekCount);
+        map.putDouble("seekMaxMs", mSeekCount == 0 ? -1 : mSeekMaxMs);
+        map.putArray("recentSeeksMs", history(mSeekHistory, mSeekCount));
+        return map;
+    }
+}
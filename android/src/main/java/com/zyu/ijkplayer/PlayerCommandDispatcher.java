@@ -0,0 +1,102 @@
+package com.zyu.ijkplayer;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 播放器命令分发，每个播放器一个串行队列，共享一个固定大小的线程池，
+ * 同一播放器的命令按顺序执行，一个播放器阻塞不会拖住其他播放器
+ */
+class PlayerCommandDispatcher {
+    private static final String TAG = "PlayerCommand";
+
+    interface PlayerCommand {
+        Object run(FijkPlayer player) throws Exception;
+    }
+
+    private final ThreadPoolExecutor mPool;
+    private final ConcurrentHashMap<Integer, SerialExecutor> mExecutors = new ConcurrentHashMap<>();
+
+    PlayerCommandDispatcher() {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        final AtomicInteger count = new AtomicInteger(0);
+        mPool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ijk-command-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 获取播放器对应的串行执行器，不存在时创建
+     */
+    Executor executorFor(int playerId) {
+        SerialExecutor executor = mExecutors.get(playerId);
+        if (executor == null) {
+            SerialExecutor created = new SerialExecutor(mPool);
+            executor = mExecutors.putIfAbsent(playerId, created);
+            if (executor == null)
+                executor = created;
+        }
+        return executor;
+    }
+
+    void execute(int playerId, Runnable command) {
+        executorFor(playerId).execute(command);
+    }
+
+    /**
+     * 播放器释放后移除它的执行器，已经排队的命令仍会执行完
+     */
+    void remove(int playerId) {
+        mExecutors.remove(playerId);
+    }
+
+    private static class SerialExecutor implements Executor {
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+        private final Executor mExecutor;
+        private Runnable mActive;
+
+        SerialExecutor(Executor executor) {
+            mExecutor = executor;
+        }
+
+        @Override
+        public synchronized void execute(final Runnable r) {
+            mTasks.offer(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        r.run();
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "command failed", e);
+                    } finally {
+                        scheduleNext();
+                    }
+                }
+            });
+            if (mActive == null) {
+                scheduleNext();
+            }
+        }
+
+        private synchronized void scheduleNext() {
+            if ((mActive = mTasks.poll()) != null) {
+                mExecutor.execute(mActive);
+            }
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.zyu.ijkplayer;
+
+import android.util.Log;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 后台释放播放器，IjkMediaPlayer.release() 需要等待 native 线程结束，
+ * 可能耗时几十到几百毫秒，不应阻塞调用线程
+ */
+class PlayerReaper {
+    private static final String TAG = "PlayerReaper";
+
+    final static int DEFAULT_CAPACITY = 16;
+
+    private final LinkedBlockingQueue<FijkPlayer> mQueue;
+    private final AtomicLong mReleasedCount = new AtomicLong();
+    private final AtomicLong mOverflowCount = new AtomicLong();
+    private final AtomicLong mTotalReleaseNanos = new AtomicLong();
+    private volatile long mLastReleaseNanos = 0;
+    private volatile long mMaxReleaseNanos = 0;
+
+    PlayerReaper() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    PlayerReaper(int capacity) {
+        mQueue = new LinkedBlockingQueue<>(Math.max(1, capacity));
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    FijkPlayer player;
+                    try {
+                        player = mQueue.take();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    releaseNow(player);
+                }
+            }
+        }, "ijk-reaper");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 立即解除 Surface 和监听器，native 释放交给后台线程；
+     * 队列已满时在当前线程同步释放，避免积压过多未释放的解码器
+     */
+    void release(FijkPlayer player) {
+        player.detach();
+        if (!mQueue.offer(player)) {
+            mOverflowCount.incrementAndGet();
+            Log.w(TAG, "reaper queue full, release player " + player.getPlayerId() + " inline");
+            releaseNow(player);
+        }
+    }
+
+    private void releaseNow(FijkPlayer player) {
+        long start = System.nanoTime();
+        try {
+            player.release();
+        } catch (Exception e) {
+            Log.e(TAG, "release player " + player.getPlayerId() + " failed: " + e.getMessage());
+        }
+        long cost = System.nanoTime() - start;
+        mLastReleaseNanos = cost;
+        if (cost > mMaxReleaseNanos)
+            mMaxReleaseNanos = cost;
+        mTotalReleaseNanos.addAndGet(cost);
+        mReleasedCount.incrementAndGet();
+    }
+
+    int getQueueDepth() {
+        return mQueue.size();
+    }
+
+    long getReleasedCount() {
+        return mReleasedCount.get();
+    }
+
+    long getOverflowCount() {
+        return mOverflowCount.get();
+    }
+
+    double getLastReleaseMs() {
+        return mLastReleaseNanos / 1e6;
+    }
+
+    double getMaxReleaseMs() {
+        return mMaxReleaseNanos / 1e6;
+    }
+
+    double getAverageReleaseMs() {
+        long count = mReleasedCount.get();
+        return count == 0 ? 0 : mTotalReleaseNanos.get() / 1e6 / count;
+    }
+}
@@ -0,0 +1,109 @@
+package com.zyu.ijkplayer;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * 播放器对外状态的快照，由 FijkPlayer 在状态、seek、缓冲变化时写入，JS 同步读取时不加锁
+ *
+ * 写入之间互斥，读取按 seqlock 方式进行：序号为奇数表示正在写，读前后序号不同则重读。
+ * 播放中的位置按锚点和倍速外推，不需要定时写入
+ */
+final class PlayerStateCell {
+
+    static class Snapshot {
+        int state;
+        long position;
+        long duration;
+        long bufferedPosition;
+    }
+
+    private volatile int mSeq = 0;
+    private volatile int mState;
+    private volatile long mAnchorPosition;
+    private volatile long mAnchorTime;
+    // 是否按时间外推位置：正在播放且没有在缓冲
+    private volatile boolean mAdvancing;
+    private volatile float mSpeed = 1f;
+    private volatile long mDuration;
+    private volatile long mBufferedPosition;
+
+    synchronized void update(int state, long position, long duration, boolean advancing) {
+        mSeq++;
+        mState = state;
+        mAnchorPosition = position;
+        mAnchorTime = SystemClock.elapsedRealtime();
+        mDuration = duration;
+        mAdvancing = advancing;
+        mSeq++;
+    }
+
+    // 用实际读到的位置校正外推的误差
+    synchronized void reanchor(long position) {
+        mSeq++;
+        mAnchorPosition = position;
+        mAnchorTime = SystemClock.elapsedRealtime();
+        mSeq++;
+    }
+
+    synchronized void setBufferedPosition(long bufferedPosition) {
+        mSeq++;
+        mBufferedPosition = bufferedPosition;
+        mSeq++;
+    }
+
+    synchronized void setSpeed(float speed, long position) {
+        mSeq++;
+        mSpeed = speed;
+        mAnchorPosition = position;
+        mAnchorTime = SystemClock.elapsedRealtime();
+        mSeq++;
+    }
+
+    synchronized void reset() {
+        mSeq++;
+        mState = FijkPlayer.STATE_IDLE;
+        mAnchorPosition = 0;
+        mAnchorTime = 0;
+        mAdvancing = false;
+        mSpeed = 1f;
+        mDuration = 0;
+        mBufferedPosition = 0;
+        mSeq++;
+    }
+
+    void read(Snapshot out) {
+        int seq;
+        do {
+            seq = mSeq;
+            if ((seq & 1) != 0) {
+                Thread.yield();
+                continue;
+            }
+            out.state = mState;
+            long position = mAnchorPosition;
+            if (mAdvancing)
+                position += (long) ((SystemClock.elapsedRealtime() - mAnchorTime) * mSpeed);
+            long duration = mDuration;
+            if (duration > 0 && position > duration)
+                position = duration;
+            out.position = position;
+            out.duration = duration;
+            out.bufferedPosition = Math.max(position, mBufferedPosition);
+        } while (seq != mSeq || (seq & 1) != 0);
+    }
+
+    WritableMap toWritableMap(int playerId) {
+        Snapshot snapshot = new Snapshot();
+        read(snapshot);
+        WritableMap map = Arguments.createMap();
+        map.putInt("playerId", playerId);
+        map.putInt("state", snapshot.state);
+        map.putDouble("position", snapshot.position);
+        map.putDouble("duration", snapshot.duration);
+        map.putDouble("bufferedPosition", snapshot.bufferedPosition);
+        return map;
+    }
+}
@@ -0,0 +1,236 @@
+package com.zyu.ijkplayer;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.util.List;
+
+/**
+ * 无缝列表播放：当前项播放时，另一个隐藏的播放器在下一项上准备好并停在暂停状态，
+ * 当前项播放完立即把画面输出和 id 交给它并开始播放，播完的播放器接着去准备再下一项
+ *
+ * JS 始终使用同一个 playerId，切换由 ReactNativeIJKPlayerModule.swapPlayer 完成
+ */
+class PlaylistController implements FijkPlayer.OnStateChangedListener {
+    private static final String TAG = "PlaylistController";
+
+    private final ReactNativeIJKPlayerModule mModule;
+    private final int mPlayerId;
+    private final List<String> mUrls;
+    @Nullable
+    private final ReadableMap mOptions;
+
+    private FijkPlayer mCurrent;
+    private int mIndex;
+    // 隐藏的下一项，mNextIndex 为 -1 表示没有下一项；解码器预算统计时不加锁读取
+    private volatile FijkPlayer mNext;
+    private int mNextIndex = -1;
+    // 当前项已结束，等下一项准备好后立即切换
+    private boolean mPendingSwap = false;
+    // 切换已提交到命令线程，还没执行
+    private boolean mSwapping = false;
+    private boolean mPlayOnPrepared;
+    private boolean mReleased = false;
+
+    PlaylistController(ReactNativeIJKPlayerModule module, FijkPlayer current, List<String> urls,
+                       @Nullable ReadableMap options) {
+        mModule = module;
+        mPlayerId = current.getPlayerId();
+        mCurrent = current;
+        mUrls = urls;
+        mOptions = options;
+    }
+
+    /**
+     * 隐藏的下一项播放器，占用解码器但不在 fijkPlayers 中，由解码器预算单独统计
+     */
+    @Nullable
+    FijkPlayer getHiddenPlayer() {
+        return mNext;
+    }
+
+    synchronized void start(int index, boolean autoplay) {
+        mIndex = index;
+        mPlayOnPrepared = autoplay;
+        final FijkPlayer current = mCurrent;
+        final String url = mUrls.get(index);
+        current.removeOnStateChangedListener(this);
+        current.addOnStateChangedListener(this);
+        mModule.runOnPlayerThread(current, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mModule.loadPlaylistItem(current, url, mOptions);
+                } catch (Exception e) {
+                    Log.e(TAG, "load item " + url + " failed: " + e.getMessage());
+                }
+            }
+        });
+        emitItem(index, null);
+        // 隐藏播放器在调用线程上创建，回调投递到这个线程的 Looper
+        if (index + 1 < mUrls.size()) {
+            mNext = mModule.obtainPlayer();
+            prepareNext(index + 1);
+        }
+    }
+
+    /**
+     * 让隐藏播放器准备 index 项，没有这一项时交还隐藏播放器
+     */
+    private void prepareNext(final int index) {
+        if (index >= mUrls.size()) {
+            mNextIndex = -1;
+            if (mNext != null) {
+                mModule.discardPlayer(mNext);
+                mNext = null;
+            }
+            if (mPendingSwap) {
+                mPendingSwap = false;
+                emitFinished();
+            }
+            return;
+        }
+        if (mNext == null) {
+            mNext = mModule.obtainPlayer();
+        }
+        mNextIndex = index;
+        final FijkPlayer next = mNext;
+        final FijkPlayer current = mCurrent;
+        final String url = mUrls.get(index);
+        mModule.runOnPlayerThread(next, new Runnable() {
+            @Override
+            public void run() {
+                // 可能是刚播完的播放器，先断开视图留下的监听器
+                next.detach();
+                next.addOnStateChangedListener(PlaylistController.this);
+                next.copyHostOptions(current);
+                try {
+                    mModule.loadPlaylistItem(next, url, mOptions);
+                } catch (Exception e) {
+                    Log.e(TAG, "prepare next " + url + " failed: " + e.getMessage());
+                    onNextFailed(next, e.getMessage());
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized void onStateChanged(FijkPlayer player, int newState, int oldState) {
+        if (mReleased)
+            return;
+        if (player == mCurrent) {
+            if (newState == FijkPlayer.STATE_PREPARED && mPlayOnPrepared) {
+                mPlayOnPrepared = false;
+                final FijkPlayer current = mCurrent;
+                mModule.runOnPlayerThread(current, new Runnable() {
+                    @Override
+                    public void run() {
+                        current.start();
+                    }
+                });
+            } else if (newState == FijkPlayer.STATE_COMPLETED) {
+                advance();
+            }
+        } else if (player == mNext) {
+            if (newState == FijkPlayer.STATE_PREPARED && mPendingSwap) {
+                swap();
+            } else if (newState == FijkPlayer.STATE_ERROR) {
+                onNextFailed(player, "prepare failed");
+            }
+        }
+    }
+
+    // 下一项打不开时跳过它，改为准备再下一项
+    private synchronized void onNextFailed(FijkPlayer player, String error) {
+        if (mReleased || player != mNext || mNextIndex < 0)
+            return;
+        int failed = mNextIndex;
+        emitItem(failed, error);
+        prepareNext(failed + 1);
+    }
+
+    /**
+     * 切换到下一项，下一项还没准备好时等准备完成后再切换
+     *
+     * @return 是否还有下一项
+     */
+    synchronized boolean advance() {
+        if (mReleased)
+            return false;
+        if (mSwapping || mPendingSwap)
+            return true;
+        if (mNextIndex < 0) {
+            emitFinished();
+            return false;
+        }
+        if (mNext.getState() != FijkPlayer.STATE_PREPARED) {
+            mPendingSwap = true;
+            return true;
+        }
+        swap();
+        return true;
+    }
+
+    private void swap() {
+        mPendingSwap = false;
+        mSwapping = true;
+        final FijkPlayer old = mCurrent;
+        // 排在该 id 已提交的命令之后，切换前后的 JS 命令不会落到错误的实例上
+        mModule.runOnPlayerThread(old, new Runnable() {
+            @Override
+            public void run() {
+                synchronized (PlaylistController.this) {
+                    mSwapping = false;
+                    if (mReleased)
+                        return;
+                    FijkPlayer next = mNext;
+                    int index = mNextIndex;
+                    // 手动切到下一项时当前项还在播放
+                    if (old.getState() == FijkPlayer.STATE_STARTED)
+                        old.pause();
+                    mModule.swapPlayer(old, next);
+                    mCurrent = next;
+                    mIndex = index;
+                    mNext = old;
+                    mNextIndex = -1;
+                    next.start();
+                    emitItem(index, null);
+                    prepareNext(index + 1);
+                }
+            }
+        });
+    }
+
+    synchronized void release() {
+        mReleased = true;
+        mCurrent.removeOnStateChangedListener(this);
+        if (mNext != null) {
+            mNext.removeOnStateChangedListener(this);
+            mModule.discardPlayer(mNext);
+            mNext = null;
+        }
+        mNextIndex = -1;
+    }
+
+    private void emitItem(int index, @Nullable String error) {
+        WritableMap event = Arguments.createMap();
+        event.putInt("index", index);
+        event.putString("url", mUrls.get(index));
+        if (error != null) {
+            event.putString("error", error);
+        }
+        mModule.sendPlaylistEvent(mPlayerId, event);
+    }
+
+    private void emitFinished() {
+        WritableMap event = Arguments.createMap();
+        event.putInt("index", mIndex);
+        event.putBoolean("finished", true);
+        mModule.sendPlaylistEvent(mPlayerId, event);
+    }
+}
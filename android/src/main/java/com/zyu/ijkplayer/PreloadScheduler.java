@@ -0,0 +1,330 @@
+package com.zyu.ijkplayer;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 列表中即将出现的视频提前下载开头部分到 {@link HttpCacheStore}，
+ * 同时下载数受限，priority 越大越先下载，高优先级任务可以抢占正在下载的低优先级任务
+ */
+class PreloadScheduler {
+    private static final String TAG = "PreloadScheduler";
+
+    final static int DEFAULT_MAX_CONCURRENT = 2;
+    final static long DEFAULT_BYTES = 1024 * 1024;
+    // 只指定时长时按该码率估算需要下载的字节数
+    final static long DEFAULT_BITRATE = 2 * 1000 * 1000;
+    // 已完成的 url 只记录最近的这么多个
+    private static final int MAX_FINISHED = 64;
+
+    private final static int STATE_PENDING = 0;
+    // 已提交给线程池，还没开始执行
+    private final static int STATE_QUEUED = 1;
+    private final static int STATE_RUNNING = 2;
+
+    private static class Task implements HttpCacheProxy.ConnectionCallback {
+        final String url;
+        long bytes;
+        long durationMs;
+        int priority;
+        long seq;
+        int state = STATE_PENDING;
+        volatile boolean cancelled = false;
+        // 被抢占的任务在线程退出后重新排队
+        volatile boolean requeue = false;
+        private HttpURLConnection mConn;
+
+        Task(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public synchronized void onConnection(HttpURLConnection conn) throws IOException {
+            if (cancelled) {
+                conn.disconnect();
+                throw new IOException("preload cancelled");
+            }
+            mConn = conn;
+        }
+
+        synchronized void cancel() {
+            cancelled = true;
+            if (mConn != null)
+                mConn.disconnect();
+        }
+    }
+
+    private final HttpCacheProxy mProxy;
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<String, Task> mTasks = new HashMap<>();
+    private final LinkedHashMap<String, Boolean> mFinished = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_FINISHED;
+        }
+    };
+    private int mMaxConcurrent = DEFAULT_MAX_CONCURRENT;
+    // 已提交（排队或执行中）的任务数，不超过 mMaxConcurrent
+    private int mSubmitted = 0;
+    // 已经开始执行的任务数
+    private int mRunning = 0;
+    private long mSeq = 0;
+
+    PreloadScheduler(HttpCacheProxy proxy) {
+        mProxy = proxy;
+        final AtomicInteger count = new AtomicInteger(0);
+        // 核心线程数即并发数，无界队列下 maximumPoolSize 不起作用
+        mExecutor = new ThreadPoolExecutor(mMaxConcurrent, mMaxConcurrent, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ijk-preload-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    synchronized void setMaxConcurrent(int maxConcurrent) {
+        maxConcurrent = Math.max(1, maxConcurrent);
+        // 任何时刻都要满足 core <= max
+        if (maxConcurrent > mExecutor.getMaximumPoolSize()) {
+            mExecutor.setMaximumPoolSize(maxConcurrent);
+            mExecutor.setCorePoolSize(maxConcurrent);
+        } else {
+            mExecutor.setCorePoolSize(maxConcurrent);
+            mExecutor.setMaximumPoolSize(maxConcurrent);
+        }
+        mMaxConcurrent = maxConcurrent;
+        schedule();
+    }
+
+    synchronized int getRunningCount() {
+        return mRunning;
+    }
+
+    /**
+     * 添加或更新预加载任务，bytes 和 durationMs 都大于 0 时取两者中较大的
+     */
+    synchronized void preload(String url, long bytes, long durationMs, int priority) {
+        Task task = mTasks.get(url);
+        if (task == null) {
+            task = new Task(url);
+            mTasks.put(url, task);
+            mFinished.remove(url);
+        }
+        task.bytes = bytes;
+        task.durationMs = durationMs;
+        task.priority = priority;
+        task.seq = mSeq++;
+        if (task.state == STATE_PENDING && mSubmitted >= mMaxConcurrent)
+            preemptFor(task);
+        schedule();
+    }
+
+    synchronized void cancel(String url) {
+        Task task = mTasks.remove(url);
+        if (task != null) {
+            task.requeue = false;
+            task.cancel();
+        }
+    }
+
+    synchronized void cancelAll() {
+        for (Task task : mTasks.values()) {
+            task.requeue = false;
+            task.cancel();
+        }
+        mTasks.clear();
+    }
+
+    /**
+     * 取消所有任务并停止线程池，之后不能再使用
+     */
+    synchronized void shutdown() {
+        cancelAll();
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * 播放器即将打开 url，停止对应的预加载把带宽让给播放，
+     * 返回 true 表示该 url 有预加载数据，应当经过缓存代理播放
+     */
+    synchronized boolean onPlaybackRequested(String url) {
+        boolean known = mTasks.containsKey(url) || mFinished.containsKey(url);
+        cancel(url);
+        return known || mProxy.getStore().contains(url);
+    }
+
+    private void preemptFor(Task task) {
+        Task lowest = null;
+        for (Task running : mTasks.values()) {
+            if (running.state == STATE_RUNNING && !running.cancelled
+                    && (lowest == null || running.priority < lowest.priority)) {
+                lowest = running;
+            }
+        }
+        if (lowest != null && lowest.priority < task.priority) {
+            Log.d(TAG, "preempt " + lowest.url);
+            lowest.requeue = true;
+            lowest.cancel();
+        }
+    }
+
+    private void schedule() {
+        if (mExecutor.isShutdown())
+            return;
+        while (mSubmitted < mMaxConcurrent) {
+            Task next = null;
+            for (Task task : mTasks.values()) {
+                if (task.state != STATE_PENDING)
+                    continue;
+                if (next == null || task.priority > next.priority
+                        || (task.priority == next.priority && task.seq < next.seq)) {
+                    next = task;
+                }
+            }
+            if (next == null)
+                return;
+            next.state = STATE_QUEUED;
+            mSubmitted++;
+            final Task task = next;
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    execute(task);
+                }
+            });
+        }
+    }
+
+    private void execute(Task task) {
+        boolean started;
+        synchronized (this) {
+            // 排队期间被取消的任务不算开始执行
+            started = !task.cancelled;
+            if (started) {
+                task.state = STATE_RUNNING;
+                mRunning++;
+            }
+        }
+        boolean success = false;
+        try {
+            if (!started)
+                return;
+            if (HttpCacheProxy.isPlaylistUrl(task.url)) {
+                preloadPlaylist(task);
+            } else {
+                long bytes = budget(task.bytes, task.durationMs);
+                mProxy.prefetch(task.url, 0, bytes - 1, task);
+            }
+            success = !task.cancelled;
+        } catch (IOException e) {
+            if (!task.cancelled)
+                Log.w(TAG, "preload failed " + task.url + " " + e.getMessage());
+        } catch (RuntimeException e) {
+            // 异常的地址或源站响应按失败处理，不能让线程池线程崩溃
+            Log.w(TAG, "preload failed " + task.url, e);
+        } finally {
+            finish(task, started, success);
+        }
+    }
+
+    private synchronized void finish(Task task, boolean started, boolean success) {
+        mSubmitted--;
+        if (started)
+            mRunning--;
+        if (task.requeue && mTasks.get(task.url) == task) {
+            // 被抢占，已下载的部分在缓存里，重新排队后从断点继续
+            Task retry = new Task(task.url);
+            retry.bytes = task.bytes;
+            retry.durationMs = task.durationMs;
+            retry.priority = task.priority;
+            retry.seq = task.seq;
+            mTasks.put(task.url, retry);
+        } else if (mTasks.get(task.url) == task) {
+            mTasks.remove(task.url);
+            if (success)
+                mFinished.put(task.url, Boolean.TRUE);
+        }
+        schedule();
+    }
+
+    private static long budget(long bytes, long durationMs) {
+        long byDuration = durationMs > 0 ? durationMs * DEFAULT_BITRATE / 8 / 1000 : 0;
+        long budget = Math.max(bytes, byDuration);
+        return budget > 0 ? budget : DEFAULT_BYTES;
+    }
+
+    /**
+     * HLS 按 #EXTINF 累计时长预加载开头的分片，主列表取第一个码率
+     */
+    private void preloadPlaylist(Task task) throws IOException {
+        URL[] base = new URL[1];
+        String playlist = HttpCacheProxy.fetchText(task.url, task, base);
+        if (playlist.contains("#EXT-X-STREAM-INF")) {
+            String variant = firstUri(playlist, "#EXT-X-STREAM-INF");
+            if (variant == null)
+                return;
+            playlist = HttpCacheProxy.fetchText(HttpCacheProxy.resolve(base[0], variant), task, base);
+        }
+        long durationMs = task.durationMs > 0 ? task.durationMs : 0;
+        long bytes = task.bytes > 0 ? task.bytes : (durationMs > 0 ? 0 : DEFAULT_BYTES);
+        long loadedMs = 0;
+        long loadedBytes = 0;
+        long segmentMs = 0;
+        for (String line : playlist.split("\r?\n")) {
+            line = line.trim();
+            if (line.startsWith("#EXTINF:")) {
+                int comma = line.indexOf(',');
+                String value = line.substring(8, comma > 0 ? comma : line.length());
+                try {
+                    segmentMs = (long) (Double.parseDouble(value) * 1000);
+                } catch (NumberFormatException e) {
+                    segmentMs = 0;
+                }
+            } else if (line.length() > 0 && !line.startsWith("#")) {
+                if (task.cancelled)
+                    return;
+                boolean enoughTime = durationMs <= 0 || loadedMs >= durationMs;
+                boolean enoughBytes = bytes <= 0 || loadedBytes >= bytes;
+                if (enoughTime && enoughBytes)
+                    return;
+                loadedBytes += mProxy.prefetch(HttpCacheProxy.resolve(base[0], line), 0, -1, task);
+                loadedMs += segmentMs;
+            }
+        }
+    }
+
+    private static String firstUri(String playlist, String tag) {
+        List<String> lines = new ArrayList<>();
+        for (String line : playlist.split("\r?\n")) {
+            lines.add(line.trim());
+        }
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).startsWith(tag)) {
+                for (int j = i + 1; j < lines.size(); j++) {
+                    String line = lines.get(j);
+                    if (line.length() > 0 && !line.startsWith("#"))
+                        return line;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,65 @@
+package com.zyu.ijkplayer;
+
+import androidx.core.util.Pools;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.events.Event;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+
+/**
+ * onProgress 事件，JS 线程繁忙时队列里同一视图的进度事件只保留最新一个
+ */
+class ProgressEvent extends Event<ProgressEvent> {
+    static final String EVENT_NAME = "onProgress";
+
+    private static final Pools.SynchronizedPool<ProgressEvent> POOL = new Pools.SynchronizedPool<>(4);
+
+    private int mCurrentPosition;
+    private int mDuration;
+    private int mBufferedPosition;
+
+    private ProgressEvent() {
+    }
+
+    static ProgressEvent obtain(int viewTag, int currentPosition, int duration, int bufferedPosition) {
+        ProgressEvent event = POOL.acquire();
+        if (event == null) {
+            event = new ProgressEvent();
+        }
+        event.init(viewTag);
+        event.mCurrentPosition = currentPosition;
+        event.mDuration = duration;
+        event.mBufferedPosition = bufferedPosition;
+        return event;
+    }
+
+    @Override
+    public void onDispose() {
+        POOL.release(this);
+    }
+
+    @Override
+    public String getEventName() {
+        return EVENT_NAME;
+    }
+
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
+
+    @Override
+    public short getCoalescingKey() {
+        return 0;
+    }
+
+    @Override
+    public void dispatch(RCTEventEmitter rctEventEmitter) {
+        WritableMap event = Arguments.createMap();
+        event.putInt("currentPosition", mCurrentPosition);
+        event.putInt("duration", mDuration);
+        event.putInt("bufferedPosition", mBufferedPosition);
+        rctEventEmitter.receiveEvent(getViewTag(), getEventName(), event);
+    }
+}
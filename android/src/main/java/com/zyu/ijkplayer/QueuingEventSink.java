@@ -22,61 +22,227 @@
 
 package com.zyu.ijkplayer;
 
+import android.os.Handler;
+import android.os.Looper;
+
 import androidx.annotation.Nullable;
 
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 /**
  * 事件队列，用于缓存事件直到有监听器连接
+ *
+ * 队列有上限，进度、缓冲、状态这类事件同一播放器只保留最新值，
+ * 错误、结束和播放汇总事件总是保留，发送时按批合并成一次 emit
  */
 public class QueuingEventSink {
-    private final List<Object> eventQueue = new ArrayList<>();
+    final static String EVENT_NAME = "fijkplayer";
+    final static int DEFAULT_CAPACITY = 128;
+    private final static int MAX_BATCH = 64;
+
+    final static String TYPE_PROGRESS = "progress";
+    final static String TYPE_BUFFERING = "buffering";
+    final static String TYPE_STATE = "state";
+    final static String TYPE_STATS = "stats";
+    final static String TYPE_ERROR = "error";
+    final static String TYPE_END = "end";
+    final static String TYPE_SUMMARY = "summary";
+    final static String TYPE_STORYBOARD = "storyboard";
+    final static String TYPE_PLAYLIST = "playlist";
+
+    private final static int KIND_NORMAL = 0;
+    private final static int KIND_COALESCE = 1;
+    private final static int KIND_TERMINAL = 2;
+
+    private static class Entry {
+        final String key;
+        final int kind;
+        WritableMap event;
+
+        Entry(String key, int kind, WritableMap event) {
+            this.key = key;
+            this.kind = kind;
+            this.event = event;
+        }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Entry> eventQueue = new ArrayDeque<>();
+    private final Map<String, Entry> latest = new HashMap<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
     private DeviceEventManagerModule.RCTDeviceEventEmitter delegate;
+    private boolean flushScheduled = false;
+    // 不可丢弃的事件之外的数量
+    private int droppableCount = 0;
+    private long droppedCount = 0;
+    private long coalescedCount = 0;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    public QueuingEventSink() {
+        this(DEFAULT_CAPACITY);
+    }
 
-    public void setDelegate(@Nullable DeviceEventManagerModule.RCTDeviceEventEmitter delegate) {
+    public QueuingEventSink(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public synchronized void setDelegate(@Nullable DeviceEventManagerModule.RCTDeviceEventEmitter delegate) {
         this.delegate = delegate;
         if (delegate == null) {
             return;
         }
-        
+
         // 发送队列中的事件
-        for (Object event : eventQueue) {
-            if (event instanceof WritableMap) {
-                delegate.emit("fijkplayer", (WritableMap) event);
+        scheduleFlush();
+    }
+
+    private static int kindOf(String type) {
+        if (TYPE_PROGRESS.equals(type) || TYPE_BUFFERING.equals(type) || TYPE_STATE.equals(type)
+                || TYPE_STATS.equals(type) || TYPE_STORYBOARD.equals(type)) {
+            return KIND_COALESCE;
+        }
+        if (TYPE_ERROR.equals(type) || TYPE_END.equals(type) || TYPE_SUMMARY.equals(type)) {
+            return KIND_TERMINAL;
+        }
+        return KIND_NORMAL;
+    }
+
+    public void success(int playerId, String type, WritableMap event) {
+        event.putInt("playerId", playerId);
+        event.putString("event", type);
+        enqueue(playerId + ":" + type, kindOf(type), event);
+    }
+
+    /**
+     * 不属于某个播放器的事件，按 source 区分合并
+     */
+    public void success(String source, String type, WritableMap event) {
+        event.putString("event", type);
+        enqueue(source + ":" + type, kindOf(type), event);
+    }
+
+    public void error(String errorCode, String errorMessage, Object errorDetails) {
+        WritableMap event = Arguments.createMap();
+        event.putString("event", TYPE_ERROR);
+        event.putString("code", errorCode);
+        event.putString("message", errorMessage);
+        if (errorDetails != null) {
+            event.putString("details", String.valueOf(errorDetails));
+        }
+        enqueue(null, KIND_TERMINAL, event);
+    }
+
+    public void endOfStream() {
+        WritableMap event = Arguments.createMap();
+        event.putString("event", TYPE_END);
+        enqueue(null, KIND_TERMINAL, event);
+    }
+
+    private synchronized void enqueue(String key, int kind, WritableMap event) {
+        if (kind == KIND_COALESCE) {
+            Entry entry = latest.get(key);
+            if (entry != null) {
+                // 尚未发送的旧值直接被覆盖
+                entry.event = event;
+                coalescedCount++;
+                scheduleFlush();
+                return;
             }
         }
-        eventQueue.clear();
+        if (kind != KIND_TERMINAL) {
+            if (droppableCount >= capacity) {
+                dropOldest();
+            }
+            droppableCount++;
+        }
+        Entry entry = new Entry(key, kind, event);
+        eventQueue.addLast(entry);
+        if (kind == KIND_COALESCE) {
+            latest.put(key, entry);
+        }
+        scheduleFlush();
     }
 
-    public void success(Object event) {
-        if (delegate != null) {
-            if (event instanceof WritableMap) {
-                delegate.emit("fijkplayer", (WritableMap) event);
+    private void dropOldest() {
+        Iterator<Entry> it = eventQueue.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.kind != KIND_TERMINAL) {
+                it.remove();
+                if (entry.kind == KIND_COALESCE) {
+                    latest.remove(entry.key);
+                }
+                droppableCount--;
+                droppedCount++;
+                return;
             }
-        } else {
-            eventQueue.add(event);
         }
     }
 
-    public void error(String errorCode, String errorMessage, Object errorDetails) {
-        // 在React Native中，我们可以通过发送带有错误信息的事件来处理错误
-        if (delegate != null) {
-            // 这里可以创建一个包含错误信息的WritableMap并发送
-        } else {
-            // 可以将错误信息添加到队列中
+    private void scheduleFlush() {
+        if (delegate != null && !flushScheduled && !eventQueue.isEmpty()) {
+            flushScheduled = true;
+            handler.post(flushRunnable);
         }
     }
 
-    public void endOfStream() {
-        // 在React Native中，我们可以发送一个特殊的事件表示流结束
-        if (delegate != null) {
-            // 发送流结束事件
-        } else {
-            // 可以将流结束事件添加到队列中
+    private void flush() {
+        DeviceEventManagerModule.RCTDeviceEventEmitter emitter;
+        WritableArray batch = null;
+        int batchSize = 0;
+        synchronized (this) {
+            flushScheduled = false;
+            emitter = delegate;
+            if (emitter == null) {
+                return;
+            }
+            while (batchSize < MAX_BATCH && !eventQueue.isEmpty()) {
+                Entry entry = eventQueue.pollFirst();
+                if (entry.kind == KIND_COALESCE) {
+                    latest.remove(entry.key);
+                }
+                if (entry.kind != KIND_TERMINAL) {
+                    droppableCount--;
+                }
+                if (batch == null) {
+                    batch = Arguments.createArray();
+                }
+                batch.pushMap(entry.event);
+                batchSize++;
+            }
+            // 超出单批上限的部分下一轮继续发送
+            scheduleFlush();
+        }
+        if (batch != null) {
+            WritableMap params = Arguments.createMap();
+            params.putArray("events", batch);
+            emitter.emit(EVENT_NAME, params);
         }
     }
+
+    public synchronized int size() {
+        return eventQueue.size();
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
 }
@@ -1,12 +1,13 @@
 package com.zyu.ijkplayer;
 
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.media.AudioManager;
 import android.os.Build;
 import android.provider.Settings;
 import android.util.Log;
-import android.util.SparseArray;
 import android.view.Surface;
 import android.view.SurfaceHolder;
 import android.view.WindowManager;
@@ -17,17 +18,35 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.Dynamic;
 import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.Promise;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
 
 // 确保正确引入FijkPlayer类
 import com.zyu.ijkplayer.FijkPlayer ;
@@ -37,22 +56,101 @@ public class ReactNativeIJKPlayerModule extends ReactContextBaseJavaModule imple
     private static final String MODULE_NAME = "ReactNativeIJKPlayerModule";
 
     private final ReactApplicationContext reactContext;
-    private final SparseArray<FijkPlayer> fijkPlayers = new SparseArray<>();
-    private int playableCnt = 0;
-    private int playingCnt = 0;
+    private final ConcurrentHashMap<Integer, FijkPlayer> fijkPlayers = new ConcurrentHashMap<>();
+    private final AtomicInteger playableCnt = new AtomicInteger(0);
+    private final AtomicInteger playingCnt = new AtomicInteger(0);
+    private final PlayerCommandDispatcher mDispatcher = new PlayerCommandDispatcher();
+    private final PlayerReaper mReaper = new PlayerReaper();
+    private final StatsSampler mStatsSampler = new StatsSampler(new StatsSampler.Listener() {
+        @Override
+        public void onSample(FijkPlayer player, NativeStats stats) {
+            // 同一播放器未发出的统计只保留最新一条
+            mEventSink.success(player.getPlayerId(), QueuingEventSink.TYPE_STATS, stats.toWritableMap());
+        }
+    });
     private boolean mAudioFocusRequested = false;
     private Object mAudioFocusRequest;
     private final QueuingEventSink mEventSink = new QueuingEventSink();
+    private HttpCacheProxy mCacheProxy;
+    private PreloadScheduler mPreloader;
+    private final FijkPlayerPool mPlayerPool;
+    // 播放器当前显示在哪个视图上，截图等需要视图的操作使用
+    private final ConcurrentHashMap<Integer, ReactNativeIJKPlayerView> mViews = new ConcurrentHashMap<>();
+    private SnapshotCapturer mSnapshotCapturer;
+    private StoryboardGenerator mStoryboards;
+    private final Map<StoryboardGenerator.Job, List<Promise>> mStoryboardPromises = new HashMap<>();
+    private final ConcurrentHashMap<Integer, PlaylistController> mPlaylists = new ConcurrentHashMap<>();
+    private int mListenerCount = 0;
+
+    // 前后台切换和内存紧张时的策略，默认全部关闭
+    private volatile boolean mPauseOnBackground = false;
+    private volatile boolean mResumeOnForeground = false;
+    // onTrimMemory 达到这个级别时挂起未在播放的播放器，-1 表示不挂起
+    private volatile int mSuspendTrimLevel = -1;
+    private volatile boolean mRestoreOnForeground = true;
+    private final Set<Integer> mPausedByHost = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private final Set<Integer> mSuspendedByTrim = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+
+    // 同时占用解码器（准备中、已准备、播放、暂停）的播放器上限，0 表示不限制
+    private volatile int mMaxActivePlayers = 0;
+    // 已提交挂起命令还没执行的播放器，统计时不再算作占用
+    private final Set<Integer> mBudgetSuspending = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+    private final AtomicInteger mBudgetEvictions = new AtomicInteger(0);
+
+    private final ComponentCallbacks2 mMemoryCallbacks = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            trimMemory(level);
+        }
+
+        @Override
+        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+        }
+
+        @Override
+        public void onLowMemory() {
+            trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        }
+    };
+
+    // 播放器状态通过事件队列统一发送给 JS
+    private final FijkPlayer.OnStateChangedListener mStateEventListener = new FijkPlayer.OnStateChangedListener() {
+        @Override
+        public void onStateChanged(FijkPlayer player, int newState, int oldState) {
+            WritableMap event = Arguments.createMap();
+            event.putInt("state", newState);
+            event.putInt("oldState", oldState);
+            mEventSink.success(player.getPlayerId(), QueuingEventSink.TYPE_STATE, event);
+            if (newState == FijkPlayer.STATE_ERROR) {
+                mEventSink.success(player.getPlayerId(), QueuingEventSink.TYPE_ERROR, Arguments.createMap());
+            } else if (newState == FijkPlayer.STATE_COMPLETED) {
+                mEventSink.success(player.getPlayerId(), QueuingEventSink.TYPE_END, Arguments.createMap());
+            }
+        }
+    };
 
     public ReactNativeIJKPlayerModule(ReactApplicationContext reactContext) {
         super(reactContext);
         this.reactContext = reactContext;
         reactContext.addLifecycleEventListener(this);
+        reactContext.registerComponentCallbacks(mMemoryCallbacks);
         
         // 初始化一个播放器并释放，确保库被正确加载
         final FijkPlayer player = new FijkPlayer(this, true);
         player.setupSurface();
-        player.release();
+        mReaper.release(player);
+
+        mPlayerPool = new FijkPlayerPool(new FijkPlayerPool.Factory() {
+            @Override
+            public FijkPlayer create() {
+                return new FijkPlayer(ReactNativeIJKPlayerModule.this, false);
+            }
+        }, new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                ReactNativeIJKPlayerModule.this.reactContext.runOnNativeModulesQueueThread(command);
+            }
+        }, mReaper);
     }
 
     @Override
@@ -73,156 +171,911 @@ public class ReactNativeIJKPlayerModule extends ReactContextBaseJavaModule imple
         constants.put("STATE_STOPPED", 7);
         constants.put("STATE_ERROR", 8);
         constants.put("STATE_END", 9);
+        constants.put("FILE_READ_MODE_RANDOM_ACCESS", FileMediaDataSource.MODE_RANDOM_ACCESS);
+        constants.put("FILE_READ_MODE_MAPPED", FileMediaDataSource.MODE_MAPPED);
+        constants.put("FILE_READ_MODE_CHANNEL", FileMediaDataSource.MODE_CHANNEL);
+        constants.put("OPT_CATEGORY_FORMAT", IjkMediaPlayer.OPT_CATEGORY_FORMAT);
+        constants.put("OPT_CATEGORY_CODEC", IjkMediaPlayer.OPT_CATEGORY_CODEC);
+        constants.put("OPT_CATEGORY_SWS", IjkMediaPlayer.OPT_CATEGORY_SWS);
+        constants.put("OPT_CATEGORY_PLAYER", IjkMediaPlayer.OPT_CATEGORY_PLAYER);
+        constants.put("TRIM_MEMORY_RUNNING_LOW", ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        constants.put("TRIM_MEMORY_UI_HIDDEN", ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        constants.put("TRIM_MEMORY_BACKGROUND", ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
         return constants;
     }
 
     @ReactMethod
     public void createPlayer(Promise promise) {
-        FijkPlayer player = new FijkPlayer(this, false);
-        player.setup();
-        fijkPlayers.put(player.getPlayerId(), player);
+        FijkPlayer player = newPlayer();
         
         WritableMap result = Arguments.createMap();
         result.putInt("id", player.getPlayerId());
         promise.resolve(result);
     }
 
+    private FijkPlayer newPlayer() {
+        FijkPlayer player = mPlayerPool.acquire();
+        if (player == null) {
+            player = new FijkPlayer(this, false);
+        }
+        player.setup();
+        player.addOnStateChangedListener(mStateEventListener);
+        fijkPlayers.put(player.getPlayerId(), player);
+        return player;
+    }
+
+    /**
+     * 创建播放器并完成 setDataSource、起始位置、prepareAsync 和 start，只经过一次 bridge；
+     * 失败时播放器已释放，reject 的信息中带出错的步骤
+     */
+    @ReactMethod
+    public void open(final String url, @Nullable ReadableMap options, Promise promise) {
+        final long startAt = options != null && options.hasKey("startAt") ? (long) options.getDouble("startAt") : 0;
+        final boolean autoplay = options == null || !options.hasKey("autoplay") || options.getBoolean("autoplay");
+        final ReadableMap dataSourceOptions = options != null && options.hasKey("options") ? options.getMap("options") : null;
+        final int playerId = newPlayer().getPlayerId();
+        dispatch(playerId, promise, "open_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) throws Exception {
+                String step = "setDataSource";
+                try {
+                    applyDataSourceOptions(player, url, dataSourceOptions);
+                    player.setDataSource(url);
+                    if (startAt > 0) {
+                        step = "seekTo";
+                        player.seekTo(startAt);
+                    }
+                    step = "prepareAsync";
+                    player.prepareAsync();
+                    if (autoplay) {
+                        // 准备完成后自动开始
+                        step = "start";
+                        player.start();
+                    }
+                } catch (Exception e) {
+                    releaseRegistered(playerId);
+                    throw new Exception(step + ": " + e.getMessage(), e);
+                }
+                WritableMap result = Arguments.createMap();
+                result.putInt("id", playerId);
+                return result;
+            }
+        });
+    }
+
+    /**
+     * 在播放器线程上按顺序执行一组操作，只返回一次结果，每个操作的成败在 results 中；
+     * 默认某个操作失败后跳过后面的操作，options.continueOnError 为 true 时继续执行
+     */
+    @ReactMethod
+    public void execute(int playerId, final ReadableArray ops, @Nullable ReadableMap options, Promise promise) {
+        final boolean continueOnError = options != null && options.hasKey("continueOnError")
+                && options.getBoolean("continueOnError");
+        dispatch(playerId, promise, "execute_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) {
+                WritableArray results = Arguments.createArray();
+                boolean ok = true;
+                for (int i = 0; i < ops.size(); i++) {
+                    ReadableMap op = ops.getMap(i);
+                    String name = op.hasKey("op") ? op.getString("op") : null;
+                    WritableMap result = Arguments.createMap();
+                    result.putString("op", name);
+                    if (!ok && !continueOnError) {
+                        result.putBoolean("ok", false);
+                        result.putBoolean("skipped", true);
+                    } else {
+                        try {
+                            runOp(player, name, op);
+                            result.putBoolean("ok", true);
+                        } catch (Exception e) {
+                            ok = false;
+                            result.putBoolean("ok", false);
+                            result.putString("error", e.getMessage());
+                        }
+                    }
+                    results.pushMap(result);
+                }
+                WritableMap response = Arguments.createMap();
+                response.putBoolean("ok", ok);
+                response.putArray("results", results);
+                return response;
+            }
+        });
+    }
+
+    private void runOp(FijkPlayer player, String name, ReadableMap op) throws Exception {
+        if ("setDataSource".equals(name)) {
+            String url = op.getString("url");
+            applyDataSourceOptions(player, url, op.hasKey("options") ? op.getMap("options") : null);
+            player.setDataSource(url);
+        } else if ("setOption".equals(name)) {
+            int category = op.getInt("category");
+            String option = op.getString("name");
+            if (category < IjkMediaPlayer.OPT_CATEGORY_FORMAT || category > IjkMediaPlayer.OPT_CATEGORY_PLAYER) {
+                throw new IllegalArgumentException("Unknown option category: " + category);
+            }
+            ReadableType type = op.getType("value");
+            if (type == ReadableType.Number) {
+                setNumberOption(player, category, option, op.getDouble("value"));
+            } else if (type == ReadableType.Boolean) {
+                player.setOption(category, option, op.getBoolean("value") ? 1 : 0);
+            } else if (type == ReadableType.String) {
+                player.setOption(category, option, op.getString("value"));
+            } else {
+                throw new IllegalArgumentException("Unsupported value for option " + option);
+            }
+        } else if ("prepareAsync".equals(name)) {
+            player.prepareAsync();
+        } else if ("start".equals(name)) {
+            player.start();
+        } else if ("pause".equals(name)) {
+            player.pause();
+        } else if ("stop".equals(name)) {
+            player.stop();
+        } else if ("reset".equals(name)) {
+            player.reset();
+        } else if ("seekTo".equals(name)) {
+            player.seekTo((long) op.getDouble("msec"));
+        } else if ("setVolume".equals(name)) {
+            float volume = (float) op.getDouble("volume");
+            player.setVolume(volume, volume);
+        } else if ("setSpeed".equals(name)) {
+            player.setSpeed((float) op.getDouble("speed"));
+        } else if ("setLoopCount".equals(name)) {
+            player.setLoopCount(op.getInt("count"));
+        } else {
+            throw new IllegalArgumentException("Unknown op: " + name);
+        }
+    }
+
+    // NativeEventEmitter 订阅时调用，JS 开始监听后再发送队列中的事件
+    @ReactMethod
+    public void addListener(String eventName) {
+        if (mListenerCount++ == 0) {
+            mEventSink.setDelegate(reactContext.getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class));
+        }
+    }
+
+    @ReactMethod
+    public void removeListeners(int count) {
+        mListenerCount = Math.max(0, mListenerCount - count);
+        if (mListenerCount == 0) {
+            mEventSink.setDelegate(null);
+        }
+    }
+
+    @ReactMethod
+    public void getEventQueueStats(Promise promise) {
+        WritableMap result = Arguments.createMap();
+        result.putInt("queued", mEventSink.size());
+        result.putDouble("dropped", mEventSink.getDroppedCount());
+        result.putDouble("coalesced", mEventSink.getCoalescedCount());
+        promise.resolve(result);
+    }
+
+    /**
+     * 同步读取位置、时长、缓冲位置和状态，不经过 promise，播放器不存在时返回 null
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableMap getPlayerState(int playerId) {
+        FijkPlayer player = fijkPlayers.get(playerId);
+        return player != null ? player.getStateCell().toWritableMap(playerId) : null;
+    }
+
+    /**
+     * 一次同步读取多个播放器的状态，顺序与 playerIds 相同，不存在的播放器对应 null
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableArray getSnapshots(ReadableArray playerIds) {
+        WritableArray result = Arguments.createArray();
+        for (int i = 0; i < playerIds.size(); i++) {
+            int playerId = playerIds.getInt(i);
+            FijkPlayer player = fijkPlayers.get(playerId);
+            if (player != null) {
+                result.pushMap(player.getStateCell().toWritableMap(playerId));
+            } else {
+                result.pushNull();
+            }
+        }
+        return result;
+    }
+
+    @ReactMethod
+    public void getPlaybackStats(int playerId, Promise promise) {
+        FijkPlayer player = fijkPlayers.get(playerId);
+        if (player == null) {
+            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
+            return;
+        }
+        promise.resolve(player.getPlaybackStats().toWritableMap());
+    }
+
+    /**
+     * 开启 native 统计采样，intervalMs 为 0 时关闭
+     */
+    @ReactMethod
+    public void setStatsInterval(int playerId, int intervalMs, Promise promise) {
+        FijkPlayer player = fijkPlayers.get(playerId);
+        if (player == null) {
+            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
+            return;
+        }
+        mStatsSampler.start(player, intervalMs);
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void getNativeStats(int playerId, Promise promise) {
+        dispatch(playerId, promise, "native_stats_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) {
+                // 主动读取时重新采样一次，未准备好时返回 null
+                if (!player.sampleNativeStats())
+                    return null;
+                return player.getNativeStats().toWritableMap();
+            }
+        });
+    }
+
+    /**
+     * 清除本机记录的硬解失败信息
+     */
+    @ReactMethod
+    public void clearDecoderCapabilities(Promise promise) {
+        DecoderCapabilityCache.get(reactContext).clear();
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void getReleaseStats(Promise promise) {
+        WritableMap result = Arguments.createMap();
+        result.putInt("queueDepth", mReaper.getQueueDepth());
+        result.putDouble("released", mReaper.getReleasedCount());
+        result.putDouble("overflow", mReaper.getOverflowCount());
+        result.putDouble("lastReleaseMs", mReaper.getLastReleaseMs());
+        result.putDouble("averageReleaseMs", mReaper.getAverageReleaseMs());
+        result.putDouble("maxReleaseMs", mReaper.getMaxReleaseMs());
+        promise.resolve(result);
+    }
+
+    void bindView(int playerId, ReactNativeIJKPlayerView view) {
+        // 一个视图只对应一个播放器
+        for (Map.Entry<Integer, ReactNativeIJKPlayerView> entry : mViews.entrySet()) {
+            if (entry.getValue() == view) {
+                mViews.remove(entry.getKey(), view);
+            }
+        }
+        if (playerId >= 0) {
+            mViews.put(playerId, view);
+        }
+    }
+
+    synchronized SnapshotCapturer snapshotCapturer() {
+        if (mSnapshotCapturer == null) {
+            mSnapshotCapturer = new SnapshotCapturer(reactContext.getCacheDir());
+        }
+        return mSnapshotCapturer;
+    }
+
+    private synchronized StoryboardGenerator storyboards() {
+        if (mStoryboards == null) {
+            mStoryboards = new StoryboardGenerator(reactContext.getCacheDir(), new StoryboardGenerator.Listener() {
+                @Override
+                public void onProgress(StoryboardGenerator.Job job, boolean done, @Nullable String error) {
+                    WritableMap event = job.toWritableMap();
+                    if (error != null) {
+                        event.putString("error", error);
+                    }
+                    mEventSink.success(job.key, QueuingEventSink.TYPE_STORYBOARD, event);
+                    if (!done) {
+                        return;
+                    }
+                    List<Promise> promises;
+                    synchronized (mStoryboardPromises) {
+                        promises = mStoryboardPromises.remove(job);
+                    }
+                    if (promises == null) {
+                        return;
+                    }
+                    for (Promise promise : promises) {
+                        if (error != null) {
+                            promise.reject("storyboard_error", error);
+                        } else {
+                            promise.resolve(job.toWritableMap());
+                        }
+                    }
+                }
+            });
+        }
+        return mStoryboards;
+    }
+
+    private static StoryboardGenerator.Params storyboardParams(@Nullable ReadableMap options) {
+        StoryboardGenerator.Params params = new StoryboardGenerator.Params();
+        if (options == null)
+            return params;
+        if (options.hasKey("intervalMs"))
+            params.intervalMs = Math.max(100, (long) options.getDouble("intervalMs"));
+        if (options.hasKey("tileWidth"))
+            params.tileWidth = Math.max(16, options.getInt("tileWidth"));
+        if (options.hasKey("columns"))
+            params.columns = Math.max(1, options.getInt("columns"));
+        if (options.hasKey("maxTiles"))
+            params.maxTiles = Math.max(1, options.getInt("maxTiles"));
+        if (options.hasKey("focusMs"))
+            params.focusMs = Math.max(0, (long) options.getDouble("focusMs"));
+        if (options.hasKey("quality"))
+            params.quality = Math.max(0, Math.min(100, options.getInt("quality")));
+        return params;
+    }
+
+    /**
+     * 生成进度条预览雪碧图，过程中发送 storyboard 事件，全部完成后 resolve
+     */
+    @ReactMethod
+    public void generateStoryboard(String url, @Nullable ReadableMap options, Promise promise) {
+        StoryboardGenerator generator = storyboards();
+        // 持锁登记，避免命中缓存时任务先于登记完成
+        synchronized (mStoryboardPromises) {
+            StoryboardGenerator.Job job = generator.generate(url, storyboardParams(options));
+            List<Promise> promises = mStoryboardPromises.get(job);
+            if (promises == null) {
+                promises = new ArrayList<>();
+                mStoryboardPromises.put(job, promises);
+            }
+            promises.add(promise);
+        }
+    }
+
+    @ReactMethod
+    public void cancelStoryboard(String url, Promise promise) {
+        promise.resolve(storyboards().cancel(url));
+    }
+
+    /**
+     * 读取磁盘上已有的预览图，可能只生成了一部分，没有时返回 null
+     */
+    @ReactMethod
+    public void getStoryboard(String url, @Nullable ReadableMap options, Promise promise) {
+        StoryboardGenerator.Job job = storyboards().load(url, storyboardParams(options));
+        promise.resolve(job != null ? job.toWritableMap() : null);
+    }
+
+    @ReactMethod
+    public void clearStoryboards(Promise promise) {
+        storyboards().clear();
+        promise.resolve(null);
+    }
+
+    /**
+     * 删除未指定 path 时保存在缓存目录中的截图
+     */
+    @ReactMethod
+    public void clearSnapshots(final Promise promise) {
+        snapshotCapturer().clearFiles(new Runnable() {
+            @Override
+            public void run() {
+                promise.resolve(null);
+            }
+        });
+    }
+
+    /**
+     * 截取播放器当前画面，options 见 SnapshotCapturer.Request
+     */
+    @ReactMethod
+    public void snapshot(int playerId, @Nullable ReadableMap options, final Promise promise) {
+        final ReactNativeIJKPlayerView view = mViews.get(playerId);
+        if (!fijkPlayers.containsKey(playerId) || view == null) {
+            promise.reject("player_not_found", "Player with ID " + playerId + " not found or not attached to a view");
+            return;
+        }
+        final SnapshotCapturer.Request request = SnapshotCapturer.Request.from(options);
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                view.snapshot(request, new SnapshotCapturer.Callback() {
+                    @Override
+                    public void onResult(@Nullable WritableMap result, @Nullable String error) {
+                        if (error != null) {
+                            promise.reject("snapshot_error", error);
+                        } else {
+                            promise.resolve(result);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
     // 添加一个方法用于获取播放器实例，供ReactNativeIJKPlayerView使用
     public FijkPlayer getPlayer(int playerId) {
         return fijkPlayers.get(playerId);
     }
 
     @ReactMethod
-    public void releasePlayer(int playerId, Promise promise) {
-        FijkPlayer player = fijkPlayers.get(playerId);
-        if (player != null) {
-            player.release();
-            fijkPlayers.remove(playerId);
+    public void releasePlayer(final int playerId, final Promise promise) {
+        if (releaseRegistered(playerId)) {
             promise.resolve(null);
         } else {
             promise.reject("player_not_found", "Player with ID " + playerId + " not found");
         }
     }
 
-    @ReactMethod
-    public void setDataSource(int playerId, String url, ReadableMap options, Promise promise) {
-        FijkPlayer player = fijkPlayers.get(playerId);
+    private boolean releaseRegistered(final int playerId) {
+        PlaylistController playlist = mPlaylists.remove(playerId);
+        if (playlist != null) {
+            playlist.release();
+        }
+        final FijkPlayer player = fijkPlayers.remove(playerId);
+        mPausedByHost.remove(playerId);
+        mSuspendedByTrim.remove(playerId);
+        mBudgetSuspending.remove(playerId);
         if (player != null) {
-            try {
+            mStatsSampler.stop(playerId);
+            mViews.remove(playerId);
+            // 排在该播放器已提交的命令之后执行，native 释放由 mReaper 在后台完成
+            mDispatcher.execute(playerId, new Runnable() {
+                @Override
+                public void run() {
+                    // 先移除执行器再放回池中，播放器一旦被重新取出，命令只会进入新 id 的执行器
+                    mDispatcher.remove(playerId);
+                    // 回收前发出本次播放的统计汇总
+                    mEventSink.success(playerId, QueuingEventSink.TYPE_SUMMARY, player.getPlaybackStats().toWritableMap());
+                    if (!mPlayerPool.recycle(player)) {
+                        mReaper.release(player);
+                    }
+                }
+            });
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 在播放器自己的串行线程上执行命令，结果或异常通过 promise 返回
+     */
+    private void dispatch(final int playerId, final Promise promise, final String errorCode,
+                          final PlayerCommandDispatcher.PlayerCommand command) {
+        final FijkPlayer player = fijkPlayers.get(playerId);
+        if (player == null) {
+            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
+            return;
+        }
+        mDispatcher.execute(playerId, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    promise.resolve(command.run(player));
+                } catch (Exception e) {
+                    promise.reject(errorCode, e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * 供视图命令使用，不需要返回结果
+     */
+    void runCommand(int playerId, final PlayerCommandDispatcher.PlayerCommand command) {
+        final FijkPlayer player = fijkPlayers.get(playerId);
+        if (player == null) {
+            return;
+        }
+        mDispatcher.execute(playerId, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.run(player);
+                } catch (Exception e) {
+                    Log.e(TAG, "command failed: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    @ReactMethod
+    public void configurePlayerPool(ReadableMap config, Promise promise) {
+        int minSize = config.hasKey("minSize") ? config.getInt("minSize") : FijkPlayerPool.DEFAULT_MIN_SIZE;
+        int maxSize = config.hasKey("maxSize") ? config.getInt("maxSize") : FijkPlayerPool.DEFAULT_MAX_SIZE;
+        long idleTimeout = config.hasKey("idleTimeoutMs")
+                ? (long) config.getDouble("idleTimeoutMs") : FijkPlayerPool.DEFAULT_IDLE_TIMEOUT_MS;
+        mPlayerPool.configure(minSize, maxSize, idleTimeout);
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void setDataSource(int playerId, final String url, final ReadableMap options, Promise promise) {
+        dispatch(playerId, promise, "set_data_source_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) throws Exception {
+                applyDataSourceOptions(player, url, options);
                 // 调用FijkPlayer的setDataSource方法
                 player.setDataSource(url);
-                promise.resolve(null);
-            } catch (Exception e) {
-                promise.reject("set_data_source_error", e.getMessage());
+                return null;
             }
-        } else {
-            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
+        });
+    }
+
+    private void applyDataSourceOptions(FijkPlayer player, String url, @Nullable ReadableMap options) {
+        if (HttpCacheProxy.isHttp(url) && preloadRequested(url)) {
+            // 预加载过的地址自动经缓存代理播放
+            player.setHostOption(HostOption.HTTP_CACHE, 1);
+        }
+        if (options != null && options.hasKey("fileReadMode")) {
+            player.setHostOption(HostOption.FILE_READ_MODE, options.getInt("fileReadMode"));
+        }
+        if (options != null && options.hasKey("blockCache")) {
+            applyBlockCacheOptions(player, options);
+        }
+        if (options != null && options.hasKey("hardwareDecode")) {
+            player.setHostOption(HostOption.HW_DECODE, options.getBoolean("hardwareDecode") ? 1 : 0);
+        }
+        if (options != null && options.hasKey("videoWidth") && options.hasKey("videoHeight")) {
+            player.setHostOption(HostOption.HW_VIDEO_WIDTH, options.getInt("videoWidth"));
+            player.setHostOption(HostOption.HW_VIDEO_HEIGHT, options.getInt("videoHeight"));
+        }
+        if (options != null && options.hasKey("cache")) {
+            player.setHostOption(HostOption.HTTP_CACHE, options.getBoolean("cache") ? 1 : 0);
+        }
+        if (options != null && options.hasKey("abr")) {
+            applyAbrOptions(player, options);
+        }
+        if (options != null) {
+            applyIjkOptions(player, options);
         }
     }
 
+    /**
+     * 列表播放：按顺序播放 urls，下一项由隐藏的播放器提前准备，播完立即无缝切换，
+     * options 除 startIndex、autoplay 外与 setDataSource 的 options 相同，对每一项生效
+     */
     @ReactMethod
-    public void prepareAsync(int playerId, Promise promise) {
+    public void setPlaylist(int playerId, ReadableArray urls, @Nullable ReadableMap options, Promise promise) {
         FijkPlayer player = fijkPlayers.get(playerId);
-        if (player != null) {
-            try {
-                player.prepareAsync();
-                promise.resolve(null);
-            } catch (Exception e) {
-                promise.reject("prepare_async_error", e.getMessage());
+        if (player == null) {
+            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
+            return;
+        }
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            items.add(urls.getString(i));
+        }
+        int startIndex = options != null && options.hasKey("startIndex") ? options.getInt("startIndex") : 0;
+        if (startIndex < 0 || startIndex >= items.size()) {
+            promise.reject("invalid_playlist", "startIndex " + startIndex + " out of range");
+            return;
+        }
+        boolean autoplay = options == null || !options.hasKey("autoplay") || options.getBoolean("autoplay");
+        PlaylistController playlist = new PlaylistController(this, player, items, options);
+        PlaylistController old = mPlaylists.put(playerId, playlist);
+        if (old != null) {
+            old.release();
+        }
+        playlist.start(startIndex, autoplay);
+        promise.resolve(null);
+    }
+
+    /**
+     * 跳到列表的下一项，没有下一项时返回 false
+     */
+    @ReactMethod
+    public void playlistNext(int playerId, Promise promise) {
+        PlaylistController playlist = mPlaylists.get(playerId);
+        promise.resolve(playlist != null && playlist.advance());
+    }
+
+    @ReactMethod
+    public void clearPlaylist(int playerId, Promise promise) {
+        PlaylistController playlist = mPlaylists.remove(playerId);
+        if (playlist != null) {
+            playlist.release();
+        }
+        promise.resolve(null);
+    }
+
+    // 列表播放加载一项，在播放器的命令线程上调用
+    void loadPlaylistItem(FijkPlayer player, String url, @Nullable ReadableMap options) throws IOException {
+        if (player.getState() != FijkPlayer.STATE_IDLE) {
+            player.reset();
+        }
+        applyDataSourceOptions(player, url, options);
+        player.setDataSource(url);
+        player.prepareAsync();
+    }
+
+    // 列表播放使用的隐藏播放器，不登记到 fijkPlayers，不向 JS 发事件
+    FijkPlayer obtainPlayer() {
+        FijkPlayer player = mPlayerPool.acquire();
+        if (player == null) {
+            player = new FijkPlayer(this, false);
+        }
+        player.setup();
+        return player;
+    }
+
+    void discardPlayer(final FijkPlayer player) {
+        final int playerId = player.getPlayerId();
+        mDispatcher.execute(playerId, new Runnable() {
+            @Override
+            public void run() {
+                mDispatcher.remove(playerId);
+                if (!mPlayerPool.recycle(player)) {
+                    mReaper.release(player);
+                }
+            }
+        });
+    }
+
+    /**
+     * 把 current 的 id、画面输出和视图交给已准备好的 next，current 换成 next 原来的 id，
+     * 在 current 的命令线程上调用
+     */
+    void swapPlayer(FijkPlayer current, FijkPlayer next) {
+        final int playerId = current.getPlayerId();
+        current.removeOnStateChangedListener(mStateEventListener);
+        current.handOverOutput(next);
+        FijkPlayer.swapIds(current, next);
+        fijkPlayers.put(playerId, next);
+        next.addOnStateChangedListener(mStateEventListener);
+        mStatsSampler.transfer(next);
+        final ReactNativeIJKPlayerView view = mViews.get(playerId);
+        if (view != null) {
+            UiThreadUtil.runOnUiThread(new Runnable() {
+                @Override
+                public void run() {
+                    // 重新绑定监听器，Surface 已经交接过
+                    view.setPlayerId(playerId);
+                }
+            });
+        }
+    }
+
+    void sendPlaylistEvent(int playerId, WritableMap event) {
+        mEventSink.success(playerId, QueuingEventSink.TYPE_PLAYLIST, event);
+    }
+
+    // options 中对应 ijk 选项分类的字段
+    private static final String[] OPTION_CATEGORY_KEYS = {"format", "codec", "sws", "player"};
+    private static final int[] OPTION_CATEGORIES = {
+            IjkMediaPlayer.OPT_CATEGORY_FORMAT,
+            IjkMediaPlayer.OPT_CATEGORY_CODEC,
+            IjkMediaPlayer.OPT_CATEGORY_SWS,
+            IjkMediaPlayer.OPT_CATEGORY_PLAYER,
+    };
+
+    /**
+     * 先应用 profile，再按分类设置 options.format/codec/sws/player 中的选项
+     */
+    private void applyIjkOptions(FijkPlayer player, ReadableMap options) {
+        if (options.hasKey("profile") && options.getType("profile") == ReadableType.String) {
+            String profile = options.getString("profile");
+            if (!OptionProfile.apply(player, profile)) {
+                throw new IllegalArgumentException("Unknown option profile: " + profile);
+            }
+        }
+        for (int i = 0; i < OPTION_CATEGORY_KEYS.length; i++) {
+            String key = OPTION_CATEGORY_KEYS[i];
+            if (!options.hasKey(key) || options.getType(key) != ReadableType.Map)
+                continue;
+            ReadableMap category = options.getMap(key);
+            ReadableMapKeySetIterator it = category.keySetIterator();
+            while (it.hasNextKey()) {
+                String name = it.nextKey();
+                switch (category.getType(name)) {
+                    case Number:
+                        setNumberOption(player, OPTION_CATEGORIES[i], name, category.getDouble(name));
+                        break;
+                    case Boolean:
+                        player.setOption(OPTION_CATEGORIES[i], name, category.getBoolean(name) ? 1 : 0);
+                        break;
+                    case String:
+                        player.setOption(OPTION_CATEGORIES[i], name, category.getString(name));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported value for option " + key + "." + name);
+                }
             }
+        }
+    }
+
+    // 整数按 long 设置，小数只能以字符串传给 ffmpeg
+    private static void setNumberOption(FijkPlayer player, int category, String name, double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            player.setOption(category, name, (long) value);
         } else {
+            player.setOption(category, name, String.valueOf(value));
+        }
+    }
+
+    /**
+     * 设置单个 ijk 选项，category 使用 OPT_CATEGORY_* 常量，需在 prepareAsync 之前调用
+     */
+    @ReactMethod
+    public void setOption(int playerId, final int category, final String name, final Dynamic value, Promise promise) {
+        if (category < IjkMediaPlayer.OPT_CATEGORY_FORMAT || category > IjkMediaPlayer.OPT_CATEGORY_PLAYER) {
+            promise.reject("invalid_option", "Unknown option category: " + category);
+            return;
+        }
+        final ReadableType type = value.getType();
+        final double number = type == ReadableType.Number ? value.asDouble() : 0;
+        final boolean bool = type == ReadableType.Boolean && value.asBoolean();
+        final String string = type == ReadableType.String ? value.asString() : null;
+        if (type != ReadableType.Number && type != ReadableType.Boolean && type != ReadableType.String) {
+            promise.reject("invalid_option", "Unsupported value for option " + name);
+            return;
+        }
+        dispatch(playerId, promise, "set_option_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) {
+                if (type == ReadableType.Number) {
+                    setNumberOption(player, category, name, number);
+                } else if (type == ReadableType.Boolean) {
+                    player.setOption(category, name, bool ? 1 : 0);
+                } else {
+                    player.setOption(category, name, string);
+                }
+                return null;
+            }
+        });
+    }
+
+    private void applyBlockCacheOptions(FijkPlayer player, ReadableMap options) {
+        if (options.getType("blockCache") == ReadableType.Map) {
+            ReadableMap blockCache = options.getMap("blockCache");
+            player.setHostOption(HostOption.BLOCK_CACHE, 1);
+            if (blockCache.hasKey("blockSize")) {
+                player.setHostOption(HostOption.BLOCK_CACHE_BLOCK_SIZE, blockCache.getInt("blockSize"));
+            }
+            if (blockCache.hasKey("maxBytes")) {
+                player.setHostOption(HostOption.BLOCK_CACHE_MAX_BYTES, blockCache.getInt("maxBytes"));
+            }
+            if (blockCache.hasKey("readAhead")) {
+                player.setHostOption(HostOption.BLOCK_CACHE_READ_AHEAD, blockCache.getInt("readAhead"));
+            }
+        } else if (options.getType("blockCache") == ReadableType.Boolean) {
+            player.setHostOption(HostOption.BLOCK_CACHE, options.getBoolean("blockCache") ? 1 : 0);
+        }
+    }
+
+    private void applyAbrOptions(FijkPlayer player, ReadableMap options) {
+        if (options.getType("abr") == ReadableType.Map) {
+            ReadableMap abr = options.getMap("abr");
+            player.setHostOption(HostOption.ABR, 1);
+            if (abr.hasKey("startupIndex")) {
+                player.setHostOption(HostOption.ABR_STARTUP_INDEX, abr.getInt("startupIndex"));
+            }
+            if (abr.hasKey("bandwidthFraction")) {
+                player.setHostOption(HostOption.ABR_BANDWIDTH_FRACTION, (int) Math.round(abr.getDouble("bandwidthFraction") * 100));
+            }
+            if (abr.hasKey("minBufferForUpMs")) {
+                player.setHostOption(HostOption.ABR_MIN_BUFFER_FOR_UP, abr.getInt("minBufferForUpMs"));
+            }
+            if (abr.hasKey("maxBufferForDownMs")) {
+                player.setHostOption(HostOption.ABR_MAX_BUFFER_FOR_DOWN, abr.getInt("maxBufferForDownMs"));
+            }
+            if (abr.hasKey("panicBufferMs")) {
+                player.setHostOption(HostOption.ABR_PANIC_BUFFER, abr.getInt("panicBufferMs"));
+            }
+            if (abr.hasKey("maxBitrate")) {
+                player.setHostOption(HostOption.ABR_MAX_BITRATE, abr.getInt("maxBitrate"));
+            }
+        } else if (options.getType("abr") == ReadableType.Boolean) {
+            player.setHostOption(HostOption.ABR, options.getBoolean("abr") ? 1 : 0);
+        }
+    }
+
+    /**
+     * 自适应码率的当前档位和带宽估计，没有开启时返回 null
+     */
+    @ReactMethod
+    public void getAbrState(int playerId, Promise promise) {
+        FijkPlayer player = fijkPlayers.get(playerId);
+        if (player == null) {
             promise.reject("player_not_found", "Player with ID " + playerId + " not found");
+            return;
         }
+        HlsAbrController abr = player.getAbr();
+        promise.resolve(abr != null ? abr.toWritableMap() : null);
     }
 
     @ReactMethod
-    public void start(int playerId, Promise promise) {
+    public void getBlockCacheStats(int playerId, Promise promise) {
         FijkPlayer player = fijkPlayers.get(playerId);
         if (player != null) {
-            try {
-                player.start();
+            BlockCacheMediaDataSource cache = player.getBlockCache();
+            if (cache != null) {
+                WritableMap result = Arguments.createMap();
+                result.putDouble("hits", cache.getHitCount());
+                result.putDouble("misses", cache.getMissCount());
+                result.putDouble("prefetches", cache.getPrefetchCount());
+                result.putInt("blockSize", cache.getBlockSize());
+                result.putInt("cachedBytes", cache.getCachedBytes());
+                promise.resolve(result);
+            } else {
                 promise.resolve(null);
-            } catch (Exception e) {
-                promise.reject("start_error", e.getMessage());
             }
         } else {
             promise.reject("player_not_found", "Player with ID " + playerId + " not found");
         }
     }
 
+    @ReactMethod
+    public void prepareAsync(int playerId, Promise promise) {
+        dispatch(playerId, promise, "prepare_async_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) throws Exception {
+                player.prepareAsync();
+                return null;
+            }
+        });
+    }
+
+    @ReactMethod
+    public void start(int playerId, Promise promise) {
+        dispatch(playerId, promise, "start_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) throws Exception {
+                player.start();
+                return null;
+            }
+        });
+    }
+
     @ReactMethod
     public void pause(int playerId, Promise promise) {
-        FijkPlayer player = fijkPlayers.get(playerId);
-        if (player != null) {
-            try {
+        dispatch(playerId, promise, "pause_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) throws Exception {
                 player.pause();
-                promise.resolve(null);
-            } catch (Exception e) {
-                promise.reject("pause_error", e.getMessage());
+                return null;
             }
-        } else {
-            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
-        }
+        });
     }
 
     @ReactMethod
     public void stop(int playerId, Promise promise) {
-        FijkPlayer player = fijkPlayers.get(playerId);
-        if (player != null) {
-            try {
+        dispatch(playerId, promise, "stop_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) throws Exception {
                 player.stop();
-                promise.resolve(null);
-            } catch (Exception e) {
-                promise.reject("stop_error", e.getMessage());
+                return null;
             }
-        } else {
-            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
-        }
+        });
     }
 
     @ReactMethod
     public void reset(int playerId, Promise promise) {
-        FijkPlayer player = fijkPlayers.get(playerId);
-        if (player != null) {
-            try {
+        dispatch(playerId, promise, "reset_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) throws Exception {
                 player.reset();
-                promise.resolve(null);
-            } catch (Exception e) {
-                promise.reject("reset_error", e.getMessage());
+                return null;
             }
-        } else {
-            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
-        }
+        });
     }
 
     @ReactMethod
-    public void seekTo(int playerId, int msec, Promise promise) {
-        FijkPlayer player = fijkPlayers.get(playerId);
-        if (player != null) {
-            try {
+    public void seekTo(int playerId, final int msec, Promise promise) {
+        dispatch(playerId, promise, "seek_to_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) throws Exception {
                 player.seekTo(msec);
-                promise.resolve(null);
-            } catch (Exception e) {
-                promise.reject("seek_to_error", e.getMessage());
+                return null;
             }
-        } else {
-            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
-        }
+        });
     }
 
     @ReactMethod
-    public void setVolume(int playerId, float volume, Promise promise) {
-        FijkPlayer player = fijkPlayers.get(playerId);
-        if (player != null) {
-            try {
+    public void setVolume(int playerId, final float volume, Promise promise) {
+        dispatch(playerId, promise, "set_volume_error", new PlayerCommandDispatcher.PlayerCommand() {
+            @Override
+            public Object run(FijkPlayer player) throws Exception {
                 player.setVolume(volume, volume);
-                promise.resolve(null);
-            } catch (Exception e) {
-                promise.reject("set_volume_error", e.getMessage());
+                return null;
             }
-        } else {
-            promise.reject("player_not_found", "Player with ID " + playerId + " not found");
-        }
+        });
     }
 
     @ReactMethod
@@ -296,16 +1149,219 @@ public class ReactNativeIJKPlayerModule extends ReactContextBaseJavaModule imple
         }
     }
 
+    @Nullable
+    @Override
+    public synchronized HttpCacheProxy cacheProxy() {
+        if (mCacheProxy == null) {
+            File dir = new File(reactContext.getCacheDir(), "ijk-http-cache");
+            HttpCacheProxy proxy = new HttpCacheProxy(HttpCacheStore.obtain(dir, HttpCacheStore.DEFAULT_MAX_BYTES));
+            try {
+                proxy.start();
+                mCacheProxy = proxy;
+            } catch (IOException e) {
+                Log.e(TAG, "failed to start cache proxy " + e.getMessage());
+                proxy.shutdown();
+            }
+        }
+        return mCacheProxy;
+    }
+
+    @Nullable
+    private synchronized PreloadScheduler preloader() {
+        if (mPreloader == null) {
+            HttpCacheProxy proxy = cacheProxy();
+            if (proxy != null) {
+                mPreloader = new PreloadScheduler(proxy);
+            }
+        }
+        return mPreloader;
+    }
+
+    private synchronized boolean preloadRequested(String url) {
+        return mPreloader != null && mPreloader.onPlaybackRequested(url);
+    }
+
+    @ReactMethod
+    public void preload(String url, @Nullable ReadableMap options, Promise promise) {
+        if (url == null || !HttpCacheProxy.isHttp(url)) {
+            promise.reject("preload_error", "Only http(s) urls can be preloaded");
+            return;
+        }
+        PreloadScheduler preloader = preloader();
+        if (preloader == null) {
+            promise.reject("preload_error", "Cache proxy is not available");
+            return;
+        }
+        long bytes = 0;
+        long durationMs = 0;
+        int priority = 0;
+        if (options != null) {
+            if (options.hasKey("bytes")) {
+                bytes = (long) options.getDouble("bytes");
+            }
+            if (options.hasKey("ms")) {
+                durationMs = (long) options.getDouble("ms");
+            }
+            if (options.hasKey("priority")) {
+                priority = options.getInt("priority");
+            }
+        }
+        preloader.preload(url, bytes, durationMs, priority);
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void cancelPreload(String url, Promise promise) {
+        synchronized (this) {
+            if (mPreloader != null) {
+                mPreloader.cancel(url);
+            }
+        }
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void setPreloadConcurrency(int maxConcurrent, Promise promise) {
+        PreloadScheduler preloader = preloader();
+        if (preloader != null) {
+            preloader.setMaxConcurrent(maxConcurrent);
+        }
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void clearHttpCache(Promise promise) {
+        HttpCacheProxy proxy = cacheProxy();
+        if (proxy != null) {
+            proxy.getStore().clear();
+        }
+        promise.resolve(null);
+    }
+
+    @Override
+    public void runOnPlayerThread(@NonNull FijkPlayer player, @NonNull Runnable task) {
+        mDispatcher.execute(player.getPlayerId(), task);
+    }
+
+    @Override
+    public void onDecoderAcquired(@NonNull FijkPlayer player) {
+        enforceDecoderBudget(player);
+    }
+
+    private static boolean holdsDecoder(FijkPlayer player) {
+        if (player.isSuspended())
+            return false;
+        int state = player.getState();
+        return state == FijkPlayer.STATE_ASYNC_PREPARING || state == FijkPlayer.STATE_PREPARED
+                || state == FijkPlayer.STATE_STARTED || state == FijkPlayer.STATE_PAUSED
+                || state == FijkPlayer.STATE_COMPLETED;
+    }
+
+    /**
+     * acquiring 即将占用解码器，超出预算时挂起最久未使用的未在播放的播放器；
+     * 列表播放的隐藏播放器同样计入，并且最先被挂起，切换到它时在原位置重新准备
+     */
+    private synchronized void enforceDecoderBudget(FijkPlayer acquiring) {
+        int max = mMaxActivePlayers;
+        if (max <= 0) {
+            return;
+        }
+        List<FijkPlayer> hidden = new ArrayList<>();
+        List<FijkPlayer> idle = new ArrayList<>();
+        int active = 1;
+        for (PlaylistController playlist : mPlaylists.values()) {
+            FijkPlayer next = playlist.getHiddenPlayer();
+            if (next == null || next == acquiring || !holdsDecoder(next)
+                    || mBudgetSuspending.contains(next.getPlayerId())) {
+                continue;
+            }
+            active++;
+            if (next.getState() != FijkPlayer.STATE_ASYNC_PREPARING) {
+                hidden.add(next);
+            }
+        }
+        for (FijkPlayer player : fijkPlayers.values()) {
+            if (player == acquiring || !holdsDecoder(player) || mBudgetSuspending.contains(player.getPlayerId())) {
+                continue;
+            }
+            active++;
+            if (player.getState() != FijkPlayer.STATE_STARTED && player.getState() != FijkPlayer.STATE_ASYNC_PREPARING) {
+                idle.add(player);
+            }
+        }
+        Collections.sort(idle, new Comparator<FijkPlayer>() {
+            @Override
+            public int compare(FijkPlayer a, FijkPlayer b) {
+                long diff = a.getLastUsedAt() - b.getLastUsedAt();
+                return diff < 0 ? -1 : (diff == 0 ? 0 : 1);
+            }
+        });
+        idle.addAll(0, hidden);
+        for (int i = 0; active > max && i < idle.size(); i++, active--) {
+            final int playerId = idle.get(i).getPlayerId();
+            mBudgetSuspending.add(playerId);
+            mBudgetEvictions.incrementAndGet();
+            runCommand(playerId, new PlayerCommandDispatcher.PlayerCommand() {
+                @Override
+                public Object run(FijkPlayer player) {
+                    mBudgetSuspending.remove(playerId);
+                    player.suspend();
+                    return null;
+                }
+            });
+        }
+        if (active > max) {
+            Log.w(TAG, "decoder budget " + max + " exceeded, " + active + " players are playing or preparing");
+        }
+    }
+
+    /**
+     * 设置同时占用解码器的播放器上限，超出时挂起最久未使用的暂停中的播放器，0 表示不限制
+     */
+    @ReactMethod
+    public void setDecoderBudget(int maxActivePlayers, Promise promise) {
+        mMaxActivePlayers = Math.max(0, maxActivePlayers);
+        promise.resolve(null);
+    }
+
+    @ReactMethod
+    public void getDecoderBudgetStats(Promise promise) {
+        int active = 0;
+        int suspended = 0;
+        for (FijkPlayer player : fijkPlayers.values()) {
+            if (player.isSuspended()) {
+                suspended++;
+            } else if (holdsDecoder(player)) {
+                active++;
+            }
+        }
+        for (PlaylistController playlist : mPlaylists.values()) {
+            FijkPlayer next = playlist.getHiddenPlayer();
+            if (next == null)
+                continue;
+            if (next.isSuspended()) {
+                suspended++;
+            } else if (holdsDecoder(next)) {
+                active++;
+            }
+        }
+        WritableMap result = Arguments.createMap();
+        result.putInt("maxActive", mMaxActivePlayers);
+        result.putInt("active", active);
+        result.putInt("suspended", suspended);
+        result.putInt("playable", playableCnt.get());
+        result.putDouble("evictions", mBudgetEvictions.get());
+        promise.resolve(result);
+    }
+
     @Override
     public void onPlayingChange(int delta) {
-        playingCnt += delta;
-        Log.d(TAG, "onPlayingChange: " + playingCnt);
+        Log.d(TAG, "onPlayingChange: " + playingCnt.addAndGet(delta));
     }
 
     @Override
     public void onPlayableChange(int delta) {
-        playableCnt += delta;
-        Log.d(TAG, "onPlayableChange: " + playableCnt);
+        Log.d(TAG, "onPlayableChange: " + playableCnt.addAndGet(delta));
     }
 
     @Override
@@ -411,22 +1467,155 @@ public class ReactNativeIJKPlayerModule extends ReactContextBaseJavaModule imple
     @Override
     public void onHostResume() {
         // 应用恢复时的处理
+        List<Integer> paused = new ArrayList<>(mPausedByHost);
+        mPausedByHost.clear();
+        if (mResumeOnForeground) {
+            for (final Integer playerId : paused) {
+                runCommand(playerId, new PlayerCommandDispatcher.PlayerCommand() {
+                    @Override
+                    public Object run(FijkPlayer player) {
+                        // 期间被 JS 操作过的不再自动播放，挂起的会从原位置恢复并播放
+                        if (player.getState() == FijkPlayer.STATE_PAUSED) {
+                            mSuspendedByTrim.remove(player.getPlayerId());
+                            player.start();
+                        }
+                        return null;
+                    }
+                });
+            }
+        }
+        if (mRestoreOnForeground) {
+            List<Integer> suspended = new ArrayList<>(mSuspendedByTrim);
+            mSuspendedByTrim.clear();
+            for (Integer playerId : suspended) {
+                runCommand(playerId, new PlayerCommandDispatcher.PlayerCommand() {
+                    @Override
+                    public Object run(FijkPlayer player) {
+                        // 提前在原位置准备好，用户回来时马上可以播放
+                        player.restore(false);
+                        return null;
+                    }
+                });
+            }
+        }
     }
 
     @Override
     public void onHostPause() {
         // 应用暂停时的处理
+        if (!mPauseOnBackground) {
+            return;
+        }
+        for (final Map.Entry<Integer, FijkPlayer> entry : fijkPlayers.entrySet()) {
+            if (entry.getValue().getState() != FijkPlayer.STATE_STARTED) {
+                continue;
+            }
+            mPausedByHost.add(entry.getKey());
+            runCommand(entry.getKey(), new PlayerCommandDispatcher.PlayerCommand() {
+                @Override
+                public Object run(FijkPlayer player) {
+                    if (player.getState() == FijkPlayer.STATE_STARTED) {
+                        player.pause();
+                    }
+                    return null;
+                }
+            });
+        }
+    }
+
+    /**
+     * 内存紧张时挂起所有未在播放的播放器，释放解码器和缓冲，并清空播放器池
+     */
+    private void trimMemory(int level) {
+        int threshold = mSuspendTrimLevel;
+        if (threshold < 0 || level < threshold) {
+            return;
+        }
+        Log.i(TAG, "trim memory level " + level + ", suspend idle players");
+        for (Integer playerId : fijkPlayers.keySet()) {
+            runCommand(playerId, new PlayerCommandDispatcher.PlayerCommand() {
+                @Override
+                public Object run(FijkPlayer player) {
+                    if (player.suspend()) {
+                        mSuspendedByTrim.add(player.getPlayerId());
+                    }
+                    return null;
+                }
+            });
+        }
+        mPlayerPool.clear();
+    }
+
+    /**
+     * 配置前后台切换和内存紧张时的处理策略，未传的字段保持不变
+     */
+    @ReactMethod
+    public void setLifecyclePolicy(ReadableMap policy, Promise promise) {
+        if (policy.hasKey("pauseOnBackground")) {
+            mPauseOnBackground = policy.getBoolean("pauseOnBackground");
+        }
+        if (policy.hasKey("resumeOnForeground")) {
+            mResumeOnForeground = policy.getBoolean("resumeOnForeground");
+        }
+        if (policy.hasKey("suspendOnTrimLevel")) {
+            mSuspendTrimLevel = policy.isNull("suspendOnTrimLevel") ? -1 : policy.getInt("suspendOnTrimLevel");
+        }
+        if (policy.hasKey("restoreOnForeground")) {
+            mRestoreOnForeground = policy.getBoolean("restoreOnForeground");
+        }
+        promise.resolve(null);
+    }
+
+    @Override
+    public void onCatalystInstanceDestroy() {
+        reactContext.unregisterComponentCallbacks(mMemoryCallbacks);
+        synchronized (this) {
+            // JS 重新加载时模块会重建，关闭代理的端口和线程，缓存目录交还给下一个实例
+            if (mPreloader != null) {
+                mPreloader.shutdown();
+                mPreloader = null;
+            }
+            if (mCacheProxy != null) {
+                mCacheProxy.shutdown();
+                mCacheProxy = null;
+            }
+        }
     }
 
     @Override
     public void onHostDestroy() {
         // 应用销毁时的处理
-        for (int i = 0; i < fijkPlayers.size(); i++) {
-            FijkPlayer player = fijkPlayers.valueAt(i);
-            if (player != null) {
-                player.release();
+        mStatsSampler.stopAll();
+        mViews.clear();
+        for (PlaylistController playlist : mPlaylists.values()) {
+            playlist.release();
+        }
+        mPlaylists.clear();
+        synchronized (this) {
+            if (mSnapshotCapturer != null) {
+                mSnapshotCapturer.clear();
+            }
+            if (mStoryboards != null) {
+                mStoryboards.cancelAll();
             }
         }
+        for (final FijkPlayer player : fijkPlayers.values()) {
+            final int playerId = player.getPlayerId();
+            // 排在已提交的命令之后释放，避免命令在 reaper 释放时还在操作播放器
+            mDispatcher.execute(playerId, new Runnable() {
+                @Override
+                public void run() {
+                    mDispatcher.remove(playerId);
+                    mReaper.release(player);
+                }
+            });
+        }
         fijkPlayers.clear();
+        mPlayerPool.clear();
+        synchronized (this) {
+            if (mCacheProxy != null) {
+                mCacheProxy.getStore().flush();
+            }
+        }
     }
 } 
\ No newline at end of file
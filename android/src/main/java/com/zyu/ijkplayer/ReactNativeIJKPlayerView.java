@@ -1,16 +1,25 @@
 package com.zyu.ijkplayer;
 
 import android.content.Context;
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
+import android.view.SurfaceHolder;
 import android.view.SurfaceView;
+import android.view.TextureView;
 import android.view.View;
 import android.widget.FrameLayout;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactContext;
 import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.UIManagerModule;
+import com.facebook.react.uimanager.events.Event;
+import com.facebook.react.uimanager.events.EventDispatcher;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
 
 // 确保正确引入FijkPlayer类
@@ -20,16 +29,52 @@ import tv.danmaku.ijk.media.player.IMediaPlayer;
 public class ReactNativeIJKPlayerView extends FrameLayout implements IMediaPlayer.OnPreparedListener, 
         IMediaPlayer.OnCompletionListener, IMediaPlayer.OnBufferingUpdateListener, 
         IMediaPlayer.OnSeekCompleteListener, IMediaPlayer.OnErrorListener, 
-        IMediaPlayer.OnInfoListener, IMediaPlayer.OnVideoSizeChangedListener {
+        IMediaPlayer.OnInfoListener, IMediaPlayer.OnVideoSizeChangedListener,
+        FijkPlayer.OnStateChangedListener {
     
     private static final String TAG = "ReactNativeIJKPlayerView";
+    private static final int DEFAULT_PROGRESS_INTERVAL = 250;
 
-    private final SurfaceView surfaceView;
+    // 同一时间只有其中一个
+    private SurfaceView surfaceView;
+    private TextureView textureView;
+    // textureView 当前的 SurfaceTexture 已交给播放器管理
+    private boolean textureHandedOff = false;
+    // surfaceView 的 Surface 是否已创建且可用
+    private boolean surfaceAvailable = false;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private int playerId = -1;
     private FijkPlayer player;
     private boolean isBuffering = false;
     private int currentBufferPercentage = 0;
 
+    // 进度定时器，只在播放中且可见时运行
+    private int progressUpdateInterval = DEFAULT_PROGRESS_INTERVAL;
+    private boolean progressTicking = false;
+    private int lastPosition = -1;
+    private int lastDuration = -1;
+    private int lastBufferedPosition = -1;
+    @Nullable
+    private EventDispatcher eventDispatcher;
+    private final Runnable progressTick = new Runnable() {
+        @Override
+        public void run() {
+            progressTicking = false;
+            if (!shouldTickProgress()) {
+                return;
+            }
+            emitProgress();
+            progressTicking = true;
+            mainHandler.postDelayed(this, progressUpdateInterval);
+        }
+    };
+    private final Runnable updateTicker = new Runnable() {
+        @Override
+        public void run() {
+            updateProgressTicker();
+        }
+    };
+
     public ReactNativeIJKPlayerView(@NonNull Context context) {
         super(context);
         
@@ -39,9 +84,123 @@ public class ReactNativeIJKPlayerView extends FrameLayout implements IMediaPlaye
                 LayoutParams.MATCH_PARENT,
                 LayoutParams.MATCH_PARENT);
         surfaceView.setLayoutParams(layoutParams);
+        surfaceView.getHolder().addCallback(surfaceCallback);
         addView(surfaceView);
     }
 
+    private final SurfaceHolder.Callback surfaceCallback = new SurfaceHolder.Callback() {
+        @Override
+        public void surfaceCreated(SurfaceHolder holder) {
+            surfaceAvailable = true;
+            if (player != null && surfaceView != null) {
+                player.setSurface(holder.getSurface());
+            }
+        }
+
+        @Override
+        public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        }
+
+        @Override
+        public void surfaceDestroyed(SurfaceHolder holder) {
+            // 必须在返回前让解码器放开这个 Surface
+            surfaceAvailable = false;
+            if (player != null && surfaceView != null) {
+                player.setSurface(null);
+            }
+        }
+    };
+
+    private final TextureView.SurfaceTextureListener textureListener = new TextureView.SurfaceTextureListener() {
+        @Override
+        public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
+            if (player != null) {
+                attachTexture(surface);
+            }
+        }
+
+        @Override
+        public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+        }
+
+        @Override
+        public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
+            // 交给播放器的由播放器释放，解码器继续输出到这个 SurfaceTexture
+            return !textureHandedOff;
+        }
+
+        @Override
+        public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+        }
+    };
+
+    /**
+     * "surface" 使用 SurfaceView，"texture" 使用 TextureView，
+     * TextureView 模式下视图重新挂载或复用时可以直接接回播放器已有的画面
+     */
+    public void setRenderType(String type) {
+        boolean texture = "texture".equals(type);
+        if (texture == (textureView != null)) {
+            return;
+        }
+        if (texture) {
+            surfaceView.getHolder().removeCallback(surfaceCallback);
+            removeView(surfaceView);
+            surfaceView = null;
+            surfaceAvailable = false;
+            replaceTextureView();
+        } else {
+            removeView(textureView);
+            textureView = null;
+            textureHandedOff = false;
+            surfaceView = new SurfaceView(getContext());
+            surfaceView.setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+            surfaceView.getHolder().addCallback(surfaceCallback);
+            addView(surfaceView);
+        }
+        bindSurface();
+    }
+
+    private void replaceTextureView() {
+        if (textureView != null) {
+            removeView(textureView);
+        }
+        textureHandedOff = false;
+        textureView = new TextureView(getContext());
+        textureView.setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT, LayoutParams.MATCH_PARENT));
+        textureView.setSurfaceTextureListener(textureListener);
+        addView(textureView);
+    }
+
+    private void attachTexture(SurfaceTexture surface) {
+        SurfaceTexture owned = player.attachTexture(surface);
+        textureHandedOff = true;
+        if (owned != surface) {
+            // 换成播放器已有的，视图自己新建的那个会被 TextureView 释放
+            textureView.setSurfaceTexture(owned);
+        }
+    }
+
+    private void bindSurface() {
+        if (player == null) {
+            return;
+        }
+        if (surfaceView != null) {
+            player.setRenderType(FijkPlayer.RENDER_SURFACE_VIEW);
+            // Surface 还没创建时等 surfaceCreated 再设置
+            player.setSurface(surfaceAvailable ? surfaceView.getHolder().getSurface() : null);
+            return;
+        }
+        player.setRenderType(FijkPlayer.RENDER_TEXTURE_VIEW);
+        SurfaceTexture current = textureView.getSurfaceTexture();
+        if (textureHandedOff && !player.ownsTexture(current)) {
+            // 当前画面属于之前的播放器，不能被替换释放，换一个新的 TextureView
+            replaceTextureView();
+        } else if (textureView.isAvailable()) {
+            attachTexture(current);
+        }
+    }
+
     public void setPlayerId(int playerId) {
         this.playerId = playerId;
         
@@ -49,13 +208,23 @@ public class ReactNativeIJKPlayerView extends FrameLayout implements IMediaPlaye
         ReactContext reactContext = (ReactContext) getContext();
         ReactNativeIJKPlayerModule module = reactContext.getNativeModule(ReactNativeIJKPlayerModule.class);
         
+        if (player != null) {
+            player.removeOnStateChangedListener(this);
+            // 换播放器时，旧播放器不能继续往这个视图的 Surface 输出
+            if (surfaceView != null && player.getSurface() != null
+                    && player.getSurface() == surfaceView.getHolder().getSurface()) {
+                player.setSurface(null);
+            }
+        }
+        player = null;
         if (module != null) {
+            module.bindView(playerId, this);
             // 使用新添加的getPlayer方法获取播放器实例
             player = module.getPlayer(playerId);
             
             if (player != null) {
                 // 设置Surface
-                player.setSurface(surfaceView.getHolder().getSurface());
+                bindSurface();
                 
                 // 设置监听器
                 player.setOnPreparedListener(this);
@@ -65,8 +234,91 @@ public class ReactNativeIJKPlayerView extends FrameLayout implements IMediaPlaye
                 player.setOnErrorListener(this);
                 player.setOnInfoListener(this);
                 player.setOnVideoSizeChangedListener(this);
+                player.addOnStateChangedListener(this);
             }
         }
+        lastPosition = -1;
+        lastDuration = -1;
+        lastBufferedPosition = -1;
+        updateProgressTicker();
+    }
+
+    /**
+     * 截取当前画面，需要在主线程调用，结果在截图线程回调
+     */
+    void snapshot(SnapshotCapturer.Request request, SnapshotCapturer.Callback callback) {
+        ReactContext reactContext = (ReactContext) getContext();
+        ReactNativeIJKPlayerModule module = reactContext.getNativeModule(ReactNativeIJKPlayerModule.class);
+        if (module == null || player == null) {
+            callback.onResult(null, "Player not attached");
+            return;
+        }
+        if (textureView != null) {
+            module.snapshotCapturer().capture(textureView, player.getVideoWidth(), player.getVideoHeight(),
+                    request, callback);
+        } else if (!surfaceAvailable) {
+            callback.onResult(null, "No video frame to capture");
+        } else {
+            module.snapshotCapturer().capture(surfaceView, player.getVideoWidth(), player.getVideoHeight(),
+                    request, callback);
+        }
+    }
+
+    void sendSnapshotEvent(@Nullable final WritableMap result, @Nullable final String error) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                WritableMap event = result != null ? result : Arguments.createMap();
+                if (error != null) {
+                    event.putString("error", error);
+                }
+                sendEvent("onSnapshot", event);
+            }
+        });
+    }
+
+    public void setProgressUpdateInterval(int interval) {
+        progressUpdateInterval = interval > 0 ? interval : DEFAULT_PROGRESS_INTERVAL;
+    }
+
+    private boolean shouldTickProgress() {
+        return player != null && player.getState() == FijkPlayer.STATE_STARTED
+                && getWindowVisibility() == VISIBLE && isShown();
+    }
+
+    private void updateProgressTicker() {
+        if (shouldTickProgress()) {
+            if (!progressTicking) {
+                progressTicking = true;
+                mainHandler.post(progressTick);
+            }
+        } else if (progressTicking) {
+            progressTicking = false;
+            mainHandler.removeCallbacks(progressTick);
+            // 暂停时补发一次最终位置
+            if (player != null) {
+                emitProgress();
+            }
+        }
+    }
+
+    private void emitProgress() {
+        int position = (int) player.getCurrentPosition();
+        int duration = (int) player.getDuration();
+        int bufferedPosition = (int) (duration * currentBufferPercentage / 100.0);
+        if (position == lastPosition && duration == lastDuration && bufferedPosition == lastBufferedPosition) {
+            return;
+        }
+        lastPosition = position;
+        lastDuration = duration;
+        lastBufferedPosition = bufferedPosition;
+        dispatchEvent(ProgressEvent.obtain(getId(), position, duration, bufferedPosition));
+    }
+
+    // FijkPlayer.OnStateChangedListener，可能在非主线程回调
+    @Override
+    public void onStateChanged(FijkPlayer player, int newState, int oldState) {
+        mainHandler.post(updateTicker);
     }
 
     public void setScaleType(String scaleType) {
@@ -92,7 +344,6 @@ public class ReactNativeIJKPlayerView extends FrameLayout implements IMediaPlaye
                     break;
             }
             
-            player.setRenderType(0); // RENDER_SURFACE_VIEW
             player.setDisplayAspectRatio(scaleTypeValue);
         }
     }
@@ -120,16 +371,45 @@ public class ReactNativeIJKPlayerView extends FrameLayout implements IMediaPlaye
         );
     }
 
+    /**
+     * 高频事件走 EventDispatcher，JS 来不及处理时同类事件合并为最新一个
+     */
+    private void dispatchEvent(Event event) {
+        if (eventDispatcher == null) {
+            UIManagerModule uiManager = ((ReactContext) getContext()).getNativeModule(UIManagerModule.class);
+            if (uiManager == null) {
+                event.onDispose();
+                return;
+            }
+            eventDispatcher = uiManager.getEventDispatcher();
+        }
+        eventDispatcher.dispatchEvent(event);
+    }
+
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         Log.d(TAG, "onAttachedToWindow");
+        updateProgressTicker();
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
         Log.d(TAG, "onDetachedFromWindow");
+        updateProgressTicker();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateProgressTicker();
+    }
+
+    @Override
+    protected void onVisibilityChanged(@NonNull View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateProgressTicker();
     }
 
     @Override
@@ -164,14 +444,8 @@ public class ReactNativeIJKPlayerView extends FrameLayout implements IMediaPlaye
     // IMediaPlayer.OnBufferingUpdateListener
     @Override
     public void onBufferingUpdate(IMediaPlayer iMediaPlayer, int percent) {
+        // 只记录缓冲进度，由定时器合并发送进度事件
         currentBufferPercentage = percent;
-        
-        // 发送进度事件
-        WritableMap event = Arguments.createMap();
-        event.putInt("currentPosition", (int) player.getCurrentPosition());
-        event.putInt("duration", (int) player.getDuration());
-        event.putInt("bufferedPosition", (int) (player.getDuration() * percent / 100.0));
-        sendEvent("onProgress", event);
     }
 
     // IMediaPlayer.OnSeekCompleteListener
@@ -198,15 +472,11 @@ public class ReactNativeIJKPlayerView extends FrameLayout implements IMediaPlaye
         switch (what) {
             case IMediaPlayer.MEDIA_INFO_BUFFERING_START:
                 isBuffering = true;
-                WritableMap bufferingStartEvent = Arguments.createMap();
-                bufferingStartEvent.putBoolean("buffering", true);
-                sendEvent("onBuffering", bufferingStartEvent);
+                dispatchEvent(BufferingEvent.obtain(getId(), true));
                 break;
             case IMediaPlayer.MEDIA_INFO_BUFFERING_END:
                 isBuffering = false;
-                WritableMap bufferingEndEvent = Arguments.createMap();
-                bufferingEndEvent.putBoolean("buffering", false);
-                sendEvent("onBuffering", bufferingEndEvent);
+                dispatchEvent(BufferingEvent.obtain(getId(), false));
                 break;
             case IMediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START:
                 WritableMap renderingStartEvent = Arguments.createMap();
@@ -220,9 +490,6 @@ public class ReactNativeIJKPlayerView extends FrameLayout implements IMediaPlaye
     // IMediaPlayer.OnVideoSizeChangedListener
     @Override
     public void onVideoSizeChanged(IMediaPlayer iMediaPlayer, int width, int height, int sarNum, int sarDen) {
-        WritableMap event = Arguments.createMap();
-        event.putInt("width", width);
-        event.putInt("height", height);
-        sendEvent("onVideoSizeChanged", event);
+        dispatchEvent(VideoSizeChangedEvent.obtain(getId(), width, height));
     }
 } 
\ No newline at end of file
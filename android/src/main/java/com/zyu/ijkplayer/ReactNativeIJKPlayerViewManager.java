@@ -5,6 +5,9 @@ import androidx.annotation.Nullable;
 
 import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.common.MapBuilder;
 import com.facebook.react.uimanager.SimpleViewManager;
 import com.facebook.react.uimanager.ThemedReactContext;
@@ -40,6 +43,11 @@ public class ReactNativeIJKPlayerViewManager extends SimpleViewManager<ReactNati
         view.setScaleType(scaleType);
     }
 
+    @ReactProp(name = "renderType")
+    public void setRenderType(ReactNativeIJKPlayerView view, @Nullable String renderType) {
+        view.setRenderType(renderType);
+    }
+
     @ReactProp(name = "volume")
     public void setVolume(ReactNativeIJKPlayerView view, float volume) {
         view.setVolume(volume);
@@ -50,6 +58,11 @@ public class ReactNativeIJKPlayerViewManager extends SimpleViewManager<ReactNati
         view.setMute(mute);
     }
 
+    @ReactProp(name = "progressUpdateInterval", defaultInt = 250)
+    public void setProgressUpdateInterval(ReactNativeIJKPlayerView view, int interval) {
+        view.setProgressUpdateInterval(interval);
+    }
+
     @Nullable
     @Override
     public Map<String, Object> getExportedCustomDirectEventTypeConstants() {
@@ -62,6 +75,7 @@ public class ReactNativeIJKPlayerViewManager extends SimpleViewManager<ReactNati
                 .put("onStateChanged", MapBuilder.of("registrationName", "onStateChanged"))
                 .put("onSeekComplete", MapBuilder.of("registrationName", "onSeekComplete"))
                 .put("onVideoSizeChanged", MapBuilder.of("registrationName", "onVideoSizeChanged"))
+                .put("onSnapshot", MapBuilder.of("registrationName", "onSnapshot"))
                 .build();
     }
 
@@ -88,26 +102,57 @@ public class ReactNativeIJKPlayerViewManager extends SimpleViewManager<ReactNati
             playerId = args.getInt(0);
         }
         
-        FijkPlayer player = module.getPlayer(playerId);
-        if (player == null) return;
-        
+        // 命令在播放器自己的串行线程上执行，避免阻塞UI线程
         switch (commandId) {
             case 1: // play
-                player.start();
+                module.runCommand(playerId, new PlayerCommandDispatcher.PlayerCommand() {
+                    @Override
+                    public Object run(FijkPlayer player) {
+                        player.start();
+                        return null;
+                    }
+                });
                 break;
             case 2: // pause
-                player.pause();
+                module.runCommand(playerId, new PlayerCommandDispatcher.PlayerCommand() {
+                    @Override
+                    public Object run(FijkPlayer player) {
+                        player.pause();
+                        return null;
+                    }
+                });
                 break;
             case 3: // stop
-                player.stop();
+                module.runCommand(playerId, new PlayerCommandDispatcher.PlayerCommand() {
+                    @Override
+                    public Object run(FijkPlayer player) {
+                        player.stop();
+                        return null;
+                    }
+                });
                 break;
             case 4: // seekTo
-                if (args != null && args.size() > 1) {
-                    player.seekTo(args.getInt(1));
+                final int seekPosition = args != null && args.size() > 1 ? args.getInt(1) : -1;
+                if (seekPosition >= 0) {
+                    module.runCommand(playerId, new PlayerCommandDispatcher.PlayerCommand() {
+                        @Override
+                        public Object run(FijkPlayer player) {
+                            player.seekTo(seekPosition);
+                            return null;
+                        }
+                    });
                 }
                 break;
             case 5: // snapshot
-                // 暂不实现截图功能
+                final ReactNativeIJKPlayerView target = view;
+                ReadableMap options = args != null && args.size() > 1 && args.getType(1) == ReadableType.Map
+                        ? args.getMap(1) : null;
+                view.snapshot(SnapshotCapturer.Request.from(options), new SnapshotCapturer.Callback() {
+                    @Override
+                    public void onResult(@Nullable WritableMap result, @Nullable String error) {
+                        target.sendSnapshotEvent(result, error);
+                    }
+                });
                 break;
         }
     }
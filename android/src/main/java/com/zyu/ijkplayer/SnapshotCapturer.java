@@ -0,0 +1,284 @@
+package com.zyu.ijkplayer;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.view.PixelCopy;
+import android.view.SurfaceView;
+import android.view.TextureView;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * 截取当前视频画面，复制和编码都在后台线程完成，Bitmap 在小池子里复用
+ */
+class SnapshotCapturer {
+
+    final static int DEFAULT_QUALITY = 90;
+    private final static int MAX_POOLED_BITMAPS = 3;
+    // 默认输出目录最多保留的截图数，超出时删除最早的
+    final static int MAX_SNAPSHOT_FILES = 20;
+
+    interface Callback {
+        void onResult(@Nullable WritableMap result, @Nullable String error);
+    }
+
+    /**
+     * 截图参数，maxWidth/maxHeight 为 0 表示按视频原始尺寸
+     */
+    static class Request {
+        boolean png = false;
+        int quality = DEFAULT_QUALITY;
+        int maxWidth = 0;
+        int maxHeight = 0;
+        @Nullable
+        String path;
+        boolean base64 = false;
+
+        static Request from(@Nullable ReadableMap options) {
+            Request request = new Request();
+            if (options == null)
+                return request;
+            if (options.hasKey("format"))
+                request.png = "png".equals(options.getString("format"));
+            if (options.hasKey("quality"))
+                request.quality = Math.max(0, Math.min(100, options.getInt("quality")));
+            if (options.hasKey("maxWidth"))
+                request.maxWidth = options.getInt("maxWidth");
+            if (options.hasKey("maxHeight"))
+                request.maxHeight = options.getInt("maxHeight");
+            if (options.hasKey("path"))
+                request.path = options.getString("path");
+            if (options.hasKey("base64"))
+                request.base64 = options.getBoolean("base64");
+            return request;
+        }
+    }
+
+    private final File mOutputDir;
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+    private final ArrayDeque<Bitmap> mPool = new ArrayDeque<>();
+
+    SnapshotCapturer(File cacheDir) {
+        mOutputDir = new File(cacheDir, "ijk-snapshots");
+        mThread = new HandlerThread("ijk-snapshot");
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * 按视频宽高比缩放到 maxWidth x maxHeight 以内，PixelCopy 复制时直接缩放
+     */
+    static int[] targetSize(int width, int height, int maxWidth, int maxHeight) {
+        float scale = 1f;
+        if (maxWidth > 0 && width > maxWidth)
+            scale = Math.min(scale, (float) maxWidth / width);
+        if (maxHeight > 0 && height > maxHeight)
+            scale = Math.min(scale, (float) maxHeight / height);
+        return new int[]{Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale))};
+    }
+
+    void capture(SurfaceView view, int videoWidth, int videoHeight, final Request request, final Callback callback) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            callback.onResult(null, "Snapshot requires Android 7.0 or later");
+            return;
+        }
+        // surface 创建前或销毁后 PixelCopy 会直接抛出异常
+        if (view.getHolder().getSurface() == null || !view.getHolder().getSurface().isValid()) {
+            callback.onResult(null, "No video frame to capture");
+            return;
+        }
+        int width = videoWidth > 0 ? videoWidth : view.getWidth();
+        int height = videoHeight > 0 ? videoHeight : view.getHeight();
+        if (width <= 0 || height <= 0) {
+            callback.onResult(null, "No video frame to capture");
+            return;
+        }
+        int[] size = targetSize(width, height, request.maxWidth, request.maxHeight);
+        final Bitmap bitmap = acquire(size[0], size[1]);
+        try {
+            request(view, bitmap, request, callback);
+        } catch (IllegalArgumentException e) {
+            recycle(bitmap);
+            callback.onResult(null, "No video frame to capture");
+        }
+    }
+
+    private void request(SurfaceView view, final Bitmap bitmap, final Request request, final Callback callback) {
+        PixelCopy.request(view, bitmap, new PixelCopy.OnPixelCopyFinishedListener() {
+            @Override
+            public void onPixelCopyFinished(int copyResult) {
+                // 在 ijk-snapshot 线程回调，直接在这里编码
+                if (copyResult != PixelCopy.SUCCESS) {
+                    recycle(bitmap);
+                    callback.onResult(null, "PixelCopy failed: " + copyResult);
+                    return;
+                }
+                encode(bitmap, request, callback);
+            }
+        }, mHandler);
+    }
+
+    /**
+     * TextureView 直接在主线程按目标尺寸取图，编码放到截图线程
+     */
+    void capture(TextureView view, int videoWidth, int videoHeight, final Request request, final Callback callback) {
+        if (!view.isAvailable()) {
+            callback.onResult(null, "No video frame to capture");
+            return;
+        }
+        int width = videoWidth > 0 ? videoWidth : view.getWidth();
+        int height = videoHeight > 0 ? videoHeight : view.getHeight();
+        if (width <= 0 || height <= 0) {
+            callback.onResult(null, "No video frame to capture");
+            return;
+        }
+        int[] size = targetSize(width, height, request.maxWidth, request.maxHeight);
+        final Bitmap bitmap = view.getBitmap(acquire(size[0], size[1]));
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                encode(bitmap, request, callback);
+            }
+        });
+    }
+
+    private void encode(Bitmap bitmap, Request request, Callback callback) {
+        File file = request.path != null ? new File(request.path)
+                : new File(mOutputDir, "snapshot_" + SystemClock.elapsedRealtime() + (request.png ? ".png" : ".jpg"));
+        boolean written = false;
+        Bitmap.CompressFormat format = request.png ? Bitmap.CompressFormat.PNG : Bitmap.CompressFormat.JPEG;
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs())
+                throw new IOException("Can't create " + parent);
+            WritableMap result = Arguments.createMap();
+            if (request.base64) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                if (!bitmap.compress(format, request.quality, bos))
+                    throw new IOException("Failed to encode snapshot");
+                byte[] data = bos.toByteArray();
+                writeFile(file, data);
+                result.putString("base64", Base64.encodeToString(data, Base64.NO_WRAP));
+            } else {
+                OutputStream out = new FileOutputStream(file);
+                try {
+                    if (!bitmap.compress(format, request.quality, out))
+                        throw new IOException("Failed to encode snapshot");
+                } finally {
+                    out.close();
+                }
+            }
+            written = true;
+            result.putString("path", file.getAbsolutePath());
+            result.putInt("width", bitmap.getWidth());
+            result.putInt("height", bitmap.getHeight());
+            callback.onResult(result, null);
+        } catch (IOException e) {
+            callback.onResult(null, e.getMessage());
+        } finally {
+            recycle(bitmap);
+            if (!written)
+                file.delete();
+        }
+        if (written && request.path == null)
+            prune();
+    }
+
+    // 默认目录只保留最近的 MAX_SNAPSHOT_FILES 张，在截图线程上执行
+    private void prune() {
+        File[] files = mOutputDir.listFiles();
+        if (files == null || files.length <= MAX_SNAPSHOT_FILES)
+            return;
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long diff = a.lastModified() - b.lastModified();
+                return diff < 0 ? -1 : (diff > 0 ? 1 : 0);
+            }
+        });
+        for (int i = 0; i < files.length - MAX_SNAPSHOT_FILES; i++) {
+            files[i].delete();
+        }
+    }
+
+    /**
+     * 删除默认目录中的所有截图，在截图线程上执行，排在已提交的截图之后
+     */
+    void clearFiles(final Runnable done) {
+        mHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                File[] files = mOutputDir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+                done.run();
+            }
+        });
+    }
+
+    private static void writeFile(File file, byte[] data) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private Bitmap acquire(int width, int height) {
+        synchronized (mPool) {
+            Iterator<Bitmap> it = mPool.iterator();
+            while (it.hasNext()) {
+                Bitmap bitmap = it.next();
+                if (bitmap.getWidth() == width && bitmap.getHeight() == height) {
+                    it.remove();
+                    return bitmap;
+                }
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    // 放回池子，超过上限时丢弃最早放入的
+    private void recycle(Bitmap bitmap) {
+        Bitmap evicted = null;
+        synchronized (mPool) {
+            mPool.addFirst(bitmap);
+            if (mPool.size() > MAX_POOLED_BITMAPS)
+                evicted = mPool.pollLast();
+        }
+        if (evicted != null)
+            evicted.recycle();
+    }
+
+    void clear() {
+        synchronized (mPool) {
+            for (Bitmap bitmap : mPool) {
+                bitmap.recycle();
+            }
+            mPool.clear();
+        }
+    }
+}
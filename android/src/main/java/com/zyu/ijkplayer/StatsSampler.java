@@ -0,0 +1,88 @@
+package com.zyu.ijkplayer;
+
+import android.util.Log;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按设定间隔在后台线程读取播放器的 native 统计，默认不开启
+ */
+class StatsSampler {
+    private static final String TAG = "StatsSampler";
+
+    final static long MIN_INTERVAL_MS = 100;
+
+    interface Listener {
+        void onSample(FijkPlayer player, NativeStats stats);
+    }
+
+    private final ScheduledExecutorService mScheduler;
+    private final ConcurrentHashMap<Integer, ScheduledFuture<?>> mTasks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Long> mIntervals = new ConcurrentHashMap<>();
+    private final Listener mListener;
+
+    StatsSampler(Listener listener) {
+        mListener = listener;
+        mScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ijk-stats");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * 开始或调整采样间隔，intervalMs <= 0 时停止
+     */
+    void start(final FijkPlayer player, long intervalMs) {
+        stop(player.getPlayerId());
+        if (intervalMs <= 0)
+            return;
+        long period = Math.max(MIN_INTERVAL_MS, intervalMs);
+        ScheduledFuture<?> task = mScheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (player.sampleNativeStats()) {
+                        mListener.onSample(player, player.getNativeStats());
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "sample player " + player.getPlayerId() + " failed: " + e.getMessage());
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+        mTasks.put(player.getPlayerId(), task);
+        mIntervals.put(player.getPlayerId(), intervalMs);
+    }
+
+    /**
+     * 同一个 id 换成了另一个播放器实例，按原来的间隔改为采样新的实例
+     */
+    void transfer(FijkPlayer player) {
+        Long intervalMs = mIntervals.get(player.getPlayerId());
+        if (intervalMs != null)
+            start(player, intervalMs);
+    }
+
+    void stop(int playerId) {
+        mIntervals.remove(playerId);
+        ScheduledFuture<?> task = mTasks.remove(playerId);
+        if (task != null)
+            task.cancel(false);
+    }
+
+    void stopAll() {
+        for (ScheduledFuture<?> task : mTasks.values()) {
+            task.cancel(false);
+        }
+        mTasks.clear();
+        mIntervals.clear();
+    }
+}
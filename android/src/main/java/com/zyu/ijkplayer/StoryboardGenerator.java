@@ -0,0 +1,569 @@
+package com.zyu.ijkplayer;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 进度条预览图，不创建播放器，用 MediaMetadataRetriever 按关键帧取缩略图，
+ * 拼成一张雪碧图并写索引文件，按地址缓存在磁盘上
+ *
+ * 离 focus 位置近的缩略图先生成，生成过程中定期落盘，取消后再次请求会接着生成缺少的部分
+ */
+class StoryboardGenerator {
+    private static final String TAG = "StoryboardGenerator";
+    private static final String INDEX_MAGIC = "ijk-storyboard 1";
+
+    final static long DEFAULT_INTERVAL_MS = 10 * 1000;
+    final static int DEFAULT_TILE_WIDTH = 160;
+    final static int DEFAULT_COLUMNS = 10;
+    final static int DEFAULT_MAX_TILES = 200;
+    private final static int WORKERS_PER_JOB = 2;
+    // 每生成这么多张或隔这么久写一次磁盘
+    private final static int FLUSH_TILES = 8;
+    private final static long FLUSH_INTERVAL_MS = 1000;
+
+    interface Listener {
+        /**
+         * 生成进度，done 为 true 时是最后一次回调，error 不为空表示失败或被取消
+         */
+        void onProgress(Job job, boolean done, @Nullable String error);
+    }
+
+    static class Params {
+        long intervalMs = DEFAULT_INTERVAL_MS;
+        int tileWidth = DEFAULT_TILE_WIDTH;
+        int columns = DEFAULT_COLUMNS;
+        int maxTiles = DEFAULT_MAX_TILES;
+        long focusMs = 0;
+        int quality = 80;
+    }
+
+    class Job {
+        final String url;
+        final String key;
+        final Params params;
+        final File dir;
+        long durationMs;
+        long intervalMs;
+        int tileWidth;
+        int tileHeight;
+        int columns;
+        long[] times = new long[0];
+        boolean[] ready = new boolean[0];
+        int readyCount = 0;
+        boolean complete = false;
+
+        private volatile boolean cancelled = false;
+        private Bitmap sprite;
+        private Canvas canvas;
+        private Integer[] order;
+        private final AtomicInteger cursor = new AtomicInteger();
+        private int activeWorkers = 0;
+        private int attempted = 0;
+        private int unflushed = 0;
+        private long lastFlushAt = 0;
+        private final Rect dst = new Rect();
+        private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+        Job(String url, Params params) {
+            this.url = url;
+            this.params = params;
+            this.key = HttpCacheStore.keyOf(url + "|" + params.intervalMs + "|" + params.tileWidth + "|"
+                    + params.columns + "|" + params.maxTiles);
+            this.dir = new File(mCacheDir, key);
+        }
+
+        File spriteFile() {
+            return new File(dir, "sprite.jpg");
+        }
+
+        File indexFile() {
+            return new File(dir, "index");
+        }
+
+        synchronized WritableMap toWritableMap() {
+            WritableMap map = Arguments.createMap();
+            map.putString("url", url);
+            map.putString("key", key);
+            map.putString("spritePath", spriteFile().getAbsolutePath());
+            map.putDouble("durationMs", durationMs);
+            map.putDouble("intervalMs", intervalMs);
+            map.putInt("tileWidth", tileWidth);
+            map.putInt("tileHeight", tileHeight);
+            map.putInt("columns", columns);
+            map.putInt("total", times.length);
+            map.putInt("ready", readyCount);
+            map.putBoolean("complete", complete);
+            WritableArray tiles = Arguments.createArray();
+            for (int i = 0; i < times.length; i++) {
+                WritableMap tile = Arguments.createMap();
+                tile.putDouble("time", times[i]);
+                tile.putInt("x", (i % columns) * tileWidth);
+                tile.putInt("y", (i / columns) * tileHeight);
+                tile.putBoolean("ready", ready[i]);
+                tiles.pushMap(tile);
+            }
+            map.putArray("tiles", tiles);
+            return map;
+        }
+    }
+
+    private final File mCacheDir;
+    private final Listener mListener;
+    private final ThreadPoolExecutor mExecutor;
+    private final Map<String, Job> mJobs = new HashMap<>();
+    // 同一 key 目录的读写互斥：取消后立即重新生成时，旧任务的线程可能还在写同一个目录
+    private final Map<String, Object> mDirLocks = new HashMap<>();
+
+    StoryboardGenerator(File cacheDir, Listener listener) {
+        mCacheDir = new File(cacheDir, "ijk-storyboards");
+        mListener = listener;
+        final AtomicInteger threadId = new AtomicInteger();
+        mExecutor = new ThreadPoolExecutor(WORKERS_PER_JOB, WORKERS_PER_JOB, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ijk-storyboard-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 开始或继续生成，已经完整生成过的直接返回缓存
+     */
+    Job generate(String url, Params params) {
+        final Job job;
+        synchronized (this) {
+            Job running = mJobs.get(url);
+            if (running != null) {
+                if (running.params.intervalMs == params.intervalMs && running.params.tileWidth == params.tileWidth
+                        && running.params.columns == params.columns && running.params.maxTiles == params.maxTiles) {
+                    return running;
+                }
+                running.cancelled = true;
+            }
+            job = new Job(url, params);
+            mJobs.put(url, job);
+        }
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                start(job);
+            }
+        });
+        return job;
+    }
+
+    boolean cancel(String url) {
+        Job job;
+        synchronized (this) {
+            job = mJobs.remove(url);
+        }
+        if (job == null)
+            return false;
+        job.cancelled = true;
+        return true;
+    }
+
+    void cancelAll() {
+        synchronized (this) {
+            for (Job job : mJobs.values()) {
+                job.cancelled = true;
+            }
+            mJobs.clear();
+        }
+    }
+
+    /**
+     * 读取磁盘上已有的结果，可能是未完成的
+     */
+    @Nullable
+    Job load(String url, Params params) {
+        Job job = new Job(url, params);
+        return readIndex(job) ? job : null;
+    }
+
+    private static MediaMetadataRetriever openRetriever(String url) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        Uri uri = Uri.parse(url);
+        String scheme = uri.getScheme();
+        if (scheme == null || "file".equals(scheme)) {
+            retriever.setDataSource(uri.getPath() != null ? uri.getPath() : url);
+        } else {
+            retriever.setDataSource(url, new HashMap<String, String>());
+        }
+        return retriever;
+    }
+
+    private static long parseLong(@Nullable String value) {
+        try {
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private void start(final Job job) {
+        if (job.cancelled) {
+            finish(job, "cancelled");
+            return;
+        }
+        MediaMetadataRetriever retriever;
+        try {
+            if (readIndex(job) && job.complete) {
+                finish(job, null);
+                return;
+            }
+            retriever = openRetriever(job.url);
+            if (job.times.length == 0 && !setup(job, retriever)) {
+                retriever.release();
+                finish(job, "Can't read video duration or size");
+                return;
+            }
+            prepareSprite(job);
+        } catch (Exception e) {
+            Log.e(TAG, "storyboard setup failed: " + e.getMessage());
+            finish(job, e.getMessage());
+            return;
+        }
+
+        synchronized (job) {
+            job.activeWorkers = Math.min(WORKERS_PER_JOB, Math.max(1, job.times.length - job.readyCount));
+        }
+        for (int i = 1; i < job.activeWorkers; i++) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    MediaMetadataRetriever own = null;
+                    try {
+                        own = openRetriever(job.url);
+                        work(job, own);
+                    } catch (Exception e) {
+                        Log.e(TAG, "storyboard worker failed: " + e.getMessage());
+                    } finally {
+                        if (own != null)
+                            own.release();
+                        workerDone(job);
+                    }
+                }
+            });
+        }
+        try {
+            work(job, retriever);
+        } catch (Exception e) {
+            Log.e(TAG, "storyboard worker failed: " + e.getMessage());
+        } finally {
+            retriever.release();
+            workerDone(job);
+        }
+    }
+
+    private synchronized Object dirLock(String key) {
+        Object lock = mDirLocks.get(key);
+        if (lock == null) {
+            lock = new Object();
+            mDirLocks.put(key, lock);
+        }
+        return lock;
+    }
+
+    // 已被同一目录的新任务取代，旧任务不再写盘，避免用旧进度覆盖新任务的结果
+    private synchronized boolean superseded(Job job) {
+        Job current = mJobs.get(job.url);
+        return current != null && current != job && current.key.equals(job.key);
+    }
+
+    private boolean setup(Job job, MediaMetadataRetriever retriever) {
+        long duration = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+        long width = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+        long height = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+        if (duration <= 0 || width <= 0 || height <= 0)
+            return false;
+        Params params = job.params;
+        // 片子太长时拉大间隔，限制雪碧图的大小
+        long interval = Math.max(params.intervalMs, duration / Math.max(1, params.maxTiles));
+        int count = (int) Math.max(1, (duration + interval - 1) / interval);
+        synchronized (job) {
+            job.durationMs = duration;
+            job.intervalMs = interval;
+            job.columns = Math.max(1, params.columns);
+            job.tileWidth = params.tileWidth;
+            job.tileHeight = Math.max(1, (int) (params.tileWidth * height / width));
+            job.times = new long[count];
+            job.ready = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                job.times[i] = i * interval;
+            }
+        }
+        return true;
+    }
+
+    private void prepareSprite(final Job job) {
+        int rows = (job.times.length + job.columns - 1) / job.columns;
+        int width = job.columns * job.tileWidth;
+        int height = rows * job.tileHeight;
+        Bitmap sprite = null;
+        if (job.readyCount > 0 && job.spriteFile().exists()) {
+            // 接着上次的结果继续
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inMutable = true;
+            options.inPreferredConfig = Bitmap.Config.RGB_565;
+            sprite = BitmapFactory.decodeFile(job.spriteFile().getAbsolutePath(), options);
+            if (sprite != null && (sprite.getWidth() != width || sprite.getHeight() != height)) {
+                sprite.recycle();
+                sprite = null;
+            }
+        }
+        if (sprite == null) {
+            sprite = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+            synchronized (job) {
+                Arrays.fill(job.ready, false);
+                job.readyCount = 0;
+            }
+        }
+        job.sprite = sprite;
+        job.canvas = new Canvas(sprite);
+
+        // 离 focus 越近越先生成
+        final long focus = job.params.focusMs;
+        Integer[] order = new Integer[job.times.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long da = Math.abs(job.times[a] - focus);
+                long db = Math.abs(job.times[b] - focus);
+                return da < db ? -1 : (da == db ? 0 : 1);
+            }
+        });
+        job.order = order;
+        job.lastFlushAt = SystemClock.elapsedRealtime();
+    }
+
+    private void work(Job job, MediaMetadataRetriever retriever) {
+        while (!job.cancelled) {
+            int next = job.cursor.getAndIncrement();
+            if (next >= job.order.length)
+                return;
+            int index = job.order[next];
+            if (job.ready[index])
+                continue;
+            long timeUs = job.times[index] * 1000;
+            Bitmap frame;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                frame = retriever.getScaledFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC,
+                        job.tileWidth, job.tileHeight);
+            } else {
+                frame = retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+            }
+            boolean flush;
+            synchronized (job) {
+                job.attempted++;
+                if (frame != null && job.sprite != null) {
+                    int x = (index % job.columns) * job.tileWidth;
+                    int y = (index / job.columns) * job.tileHeight;
+                    job.dst.set(x, y, x + job.tileWidth, y + job.tileHeight);
+                    job.canvas.drawBitmap(frame, null, job.dst, job.paint);
+                    job.ready[index] = true;
+                    job.readyCount++;
+                    job.unflushed++;
+                }
+                long now = SystemClock.elapsedRealtime();
+                flush = job.unflushed >= FLUSH_TILES || (job.unflushed > 0 && now - job.lastFlushAt >= FLUSH_INTERVAL_MS);
+                if (flush) {
+                    writeLocked(job);
+                }
+            }
+            if (frame != null)
+                frame.recycle();
+            if (flush)
+                mListener.onProgress(job, false, null);
+        }
+    }
+
+    private void workerDone(Job job) {
+        boolean last;
+        synchronized (job) {
+            last = --job.activeWorkers <= 0;
+            if (last) {
+                job.complete = job.readyCount == job.times.length
+                        || (!job.cancelled && job.attempted > 0 && job.cursor.get() >= job.order.length);
+                writeLocked(job);
+                if (job.sprite != null) {
+                    job.sprite.recycle();
+                    job.sprite = null;
+                    job.canvas = null;
+                }
+            }
+        }
+        if (last) {
+            finish(job, job.cancelled ? "cancelled" : null);
+        }
+    }
+
+    private void finish(Job job, @Nullable String error) {
+        synchronized (this) {
+            if (mJobs.get(job.url) == job)
+                mJobs.remove(job.url);
+        }
+        mListener.onProgress(job, true, error);
+    }
+
+    // 调用时持有 job 的锁
+    private void writeLocked(Job job) {
+        job.unflushed = 0;
+        job.lastFlushAt = SystemClock.elapsedRealtime();
+        if (job.sprite == null)
+            return;
+        synchronized (dirLock(job.key)) {
+            if (job.cancelled && superseded(job))
+                return;
+            writeFiles(job);
+        }
+    }
+
+    private void writeFiles(Job job) {
+        if (!job.dir.exists() && !job.dir.mkdirs()) {
+            Log.e(TAG, "failed to create " + job.dir);
+            return;
+        }
+        File spriteTmp = new File(job.dir, "sprite.jpg.tmp");
+        File indexTmp = new File(job.dir, "index.tmp");
+        try {
+            OutputStream out = new FileOutputStream(spriteTmp);
+            try {
+                job.sprite.compress(Bitmap.CompressFormat.JPEG, job.params.quality, out);
+            } finally {
+                out.close();
+            }
+            Writer writer = new OutputStreamWriter(new FileOutputStream(indexTmp), "UTF-8");
+            try {
+                writer.write(INDEX_MAGIC + "\n");
+                writer.write(job.url + "\n");
+                writer.write(job.durationMs + "\t" + job.intervalMs + "\t" + job.tileWidth + "\t"
+                        + job.tileHeight + "\t" + job.columns + "\t" + job.times.length + "\t"
+                        + (job.complete ? 1 : 0) + "\n");
+                StringBuilder ready = new StringBuilder(job.ready.length);
+                for (boolean r : job.ready) {
+                    ready.append(r ? '1' : '0');
+                }
+                writer.write(ready.toString() + "\n");
+            } finally {
+                writer.close();
+            }
+            // 先换雪碧图再换索引，索引里标记好的格子一定已经在图上
+            if (!spriteTmp.renameTo(job.spriteFile()) || !indexTmp.renameTo(job.indexFile()))
+                Log.e(TAG, "failed to commit storyboard " + job.key);
+        } catch (IOException e) {
+            Log.e(TAG, "failed to write storyboard: " + e.getMessage());
+        }
+    }
+
+    private boolean readIndex(Job job) {
+        File file = job.indexFile();
+        if (!file.exists() || !job.spriteFile().exists())
+            return false;
+        try {
+            String[] lines = new String[4];
+            // 和写盘互斥，不会读到换了一半的雪碧图和索引
+            synchronized (dirLock(job.key)) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+                try {
+                    for (int i = 0; i < lines.length; i++) {
+                        lines[i] = reader.readLine();
+                    }
+                } finally {
+                    reader.close();
+                }
+            }
+            if (!INDEX_MAGIC.equals(lines[0]))
+                return false;
+            if (!job.url.equals(lines[1]))
+                return false;
+            String[] fields = lines[2].split("\t");
+            String ready = lines[3];
+            int count = Integer.parseInt(fields[5]);
+            if (ready == null || ready.length() != count)
+                return false;
+            synchronized (job) {
+                job.durationMs = Long.parseLong(fields[0]);
+                job.intervalMs = Long.parseLong(fields[1]);
+                job.tileWidth = Integer.parseInt(fields[2]);
+                job.tileHeight = Integer.parseInt(fields[3]);
+                job.columns = Integer.parseInt(fields[4]);
+                job.complete = "1".equals(fields[6]);
+                job.times = new long[count];
+                job.ready = new boolean[count];
+                job.readyCount = 0;
+                for (int i = 0; i < count; i++) {
+                    job.times[i] = i * job.intervalMs;
+                    job.ready[i] = ready.charAt(i) == '1';
+                    if (job.ready[i])
+                        job.readyCount++;
+                }
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "bad storyboard index " + file + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 删除所有缓存的预览图，正在生成的任务会被取消
+     */
+    void clear() {
+        cancelAll();
+        File[] dirs = mCacheDir.listFiles();
+        if (dirs == null)
+            return;
+        for (File dir : dirs) {
+            File[] children = dir.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    child.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+}
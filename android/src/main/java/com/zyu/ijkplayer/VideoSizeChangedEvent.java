@@ -0,0 +1,62 @@
+package com.zyu.ijkplayer;
+
+import androidx.core.util.Pools;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.uimanager.events.Event;
+import com.facebook.react.uimanager.events.RCTEventEmitter;
+
+/**
+ * onVideoSizeChanged 事件，只有最新的尺寸需要送到 JS
+ */
+class VideoSizeChangedEvent extends Event<VideoSizeChangedEvent> {
+    static final String EVENT_NAME = "onVideoSizeChanged";
+
+    private static final Pools.SynchronizedPool<VideoSizeChangedEvent> POOL = new Pools.SynchronizedPool<>(2);
+
+    private int mWidth;
+    private int mHeight;
+
+    private VideoSizeChangedEvent() {
+    }
+
+    static VideoSizeChangedEvent obtain(int viewTag, int width, int height) {
+        VideoSizeChangedEvent event = POOL.acquire();
+        if (event == null) {
+            event = new VideoSizeChangedEvent();
+        }
+        event.init(viewTag);
+        event.mWidth = width;
+        event.mHeight = height;
+        return event;
+    }
+
+    @Override
+    public void onDispose() {
+        POOL.release(this);
+    }
+
+    @Override
+    public String getEventName() {
+        return EVENT_NAME;
+    }
+
+    @Override
+    public boolean canCoalesce() {
+        return true;
+    }
+
+    @Override
+    public short getCoalescingKey() {
+        return 0;
+    }
+
+    @Override
+    public void dispatch(RCTEventEmitter rctEventEmitter) {
+        WritableMap event = Arguments.createMap();
+        event.putInt("width", mWidth);
+        event.putInt("height", mHeight);
+        rctEventEmitter.receiveEvent(getViewTag(), getEventName(), event);
+    }
+}
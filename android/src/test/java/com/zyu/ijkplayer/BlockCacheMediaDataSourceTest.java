@@ -0,0 +1,128 @@
+package com.zyu.ijkplayer;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tv.danmaku.ijk.media.player.misc.IMediaDataSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockCacheMediaDataSourceTest {
+
+    private static final int BLOCK_SIZE = 4 * 1024;
+
+    private static class MemorySource implements IMediaDataSource {
+        final byte[] data;
+        final AtomicInteger reads = new AtomicInteger();
+
+        MemorySource(int size) {
+            data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = (byte) (i * 17 + 3);
+            }
+        }
+
+        @Override
+        public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+            reads.incrementAndGet();
+            if (position >= data.length)
+                return -1;
+            int count = (int) Math.min(size, data.length - position);
+            System.arraycopy(data, (int) position, buffer, offset, count);
+            return count;
+        }
+
+        @Override
+        public long getSize() {
+            return data.length;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static void assertReadAt(BlockCacheMediaDataSource cache, MemorySource source, long position, int size)
+            throws IOException {
+        byte[] buffer = new byte[size];
+        int count = (int) Math.min(size, source.data.length - position);
+        assertEquals(count, cache.readAt(position, buffer, 0, size));
+        for (int i = 0; i < count; i++) {
+            assertEquals(source.data[(int) position + i], buffer[i]);
+        }
+    }
+
+    @Test
+    public void repeatedReadsHitTheCache() throws IOException {
+        MemorySource source = new MemorySource(BLOCK_SIZE * 8 + 100);
+        BlockCacheMediaDataSource cache = new BlockCacheMediaDataSource(source, BLOCK_SIZE, BLOCK_SIZE * 16, 0);
+        assertReadAt(cache, source, 100, BLOCK_SIZE * 2);
+        assertEquals(3, cache.getMissCount());
+        int reads = source.reads.get();
+        assertReadAt(cache, source, 200, BLOCK_SIZE);
+        assertEquals(reads, source.reads.get());
+        assertEquals(2, cache.getHitCount());
+        assertReadAt(cache, source, BLOCK_SIZE * 8, 1000);
+        assertEquals(-1, cache.readAt(BLOCK_SIZE * 8 + 100, new byte[10], 0, 10));
+        cache.close();
+        assertEquals(-1, cache.readAt(0, new byte[10], 0, 10));
+    }
+
+    @Test
+    public void lruEvictsOldestBlock() throws IOException {
+        MemorySource source = new MemorySource(BLOCK_SIZE * 8);
+        BlockCacheMediaDataSource cache = new BlockCacheMediaDataSource(source, BLOCK_SIZE, BLOCK_SIZE * 2, 0);
+        assertReadAt(cache, source, 0, 10);
+        assertReadAt(cache, source, BLOCK_SIZE, 10);
+        assertReadAt(cache, source, BLOCK_SIZE * 2, 10);
+        assertEquals(BLOCK_SIZE * 2, cache.getCachedBytes());
+        assertReadAt(cache, source, 0, 10);
+        assertEquals(4, cache.getMissCount());
+        cache.close();
+    }
+
+    @Test
+    public void blockFilledByReadAheadWhileWaitingCountsAsHit() throws Exception {
+        final CountDownLatch aheadStarted = new CountDownLatch(1);
+        final CountDownLatch releaseAhead = new CountDownLatch(1);
+        final MemorySource source = new MemorySource(BLOCK_SIZE * 8) {
+            @Override
+            public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+                if (position == BLOCK_SIZE) {
+                    // 预读线程读块 1 时停住，让播放器的读取在锁上等待
+                    aheadStarted.countDown();
+                    try {
+                        releaseAhead.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                }
+                return super.readAt(position, buffer, offset, size);
+            }
+        };
+        final BlockCacheMediaDataSource cache = new BlockCacheMediaDataSource(source, BLOCK_SIZE, BLOCK_SIZE * 16, 1);
+        assertReadAt(cache, source, 0, BLOCK_SIZE);
+        assertTrue(aheadStarted.await(5, TimeUnit.SECONDS));
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cache.readAt(BLOCK_SIZE, new byte[100], 0, 100);
+                } catch (IOException ignored) {
+                }
+            }
+        });
+        reader.start();
+        Thread.sleep(100);
+        releaseAhead.countDown();
+        reader.join();
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        cache.close();
+    }
+}
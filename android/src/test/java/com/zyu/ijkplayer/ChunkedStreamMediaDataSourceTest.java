@@ -0,0 +1,108 @@
+package com.zyu.ijkplayer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedStreamMediaDataSourceTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int SIZE = CHUNK_SIZE * 10 + 123;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] mData = new byte[SIZE];
+    private int mOpens = 0;
+
+    private ChunkedStreamMediaDataSource create(int maxCacheBytes, File spillDir) throws IOException {
+        for (int i = 0; i < SIZE; i++) {
+            mData[i] = (byte) (i * 13 + 5);
+        }
+        return new ChunkedStreamMediaDataSource(new ChunkedStreamMediaDataSource.StreamOpener() {
+            @Override
+            public InputStream open() {
+                mOpens++;
+                return new ByteArrayInputStream(mData);
+            }
+        }, maxCacheBytes, spillDir);
+    }
+
+    private void assertReadAt(ChunkedStreamMediaDataSource source, long position, int size) {
+        byte[] buffer = new byte[size];
+        int read = source.readAt(position, buffer, 0, size);
+        int count = (int) Math.min(size, SIZE - position);
+        assertEquals(count, read);
+        for (int i = 0; i < count; i++) {
+            assertEquals(mData[(int) position + i], buffer[i]);
+        }
+    }
+
+    @Test
+    public void backwardSeekReadsSpilledDataWithoutReopening() throws IOException {
+        ChunkedStreamMediaDataSource source = create(2 * CHUNK_SIZE, folder.newFolder());
+        assertReadAt(source, 0, 1000);
+        assertReadAt(source, SIZE - 50, 100);
+        // 块 0 早已被淘汰，仍然从临时文件读到
+        assertReadAt(source, 10, 1000);
+        assertReadAt(source, CHUNK_SIZE * 3 - 100, 300);
+        assertEquals(1, mOpens);
+        source.close();
+    }
+
+    @Test
+    public void forwardSeekDoesNotFlushCachedChunks() throws IOException {
+        ChunkedStreamMediaDataSource source = create(2 * CHUNK_SIZE, null);
+        assertReadAt(source, 0, 100);
+        assertReadAt(source, CHUNK_SIZE, 100);
+        // 跳过 2..4 块，只缓存块 5
+        assertReadAt(source, CHUNK_SIZE * 5, 100);
+        assertReadAt(source, CHUNK_SIZE, 100);
+        assertEquals(1, mOpens);
+        // 没有临时文件时，被淘汰的块需要从头重新解压
+        assertReadAt(source, 0, 100);
+        assertEquals(2, mOpens);
+        source.close();
+    }
+
+    @Test
+    public void readsPastEndReturnEof() throws IOException {
+        ChunkedStreamMediaDataSource source = create(2 * CHUNK_SIZE, folder.newFolder());
+        assertEquals(SIZE, source.getSize());
+        assertEquals(-1, source.readAt(SIZE, new byte[10], 0, 10));
+        source.close();
+        assertEquals(-1, source.readAt(0, new byte[10], 0, 10));
+    }
+
+    @Test
+    public void closeDeletesSpillFile() throws IOException {
+        File dir = folder.newFolder();
+        ChunkedStreamMediaDataSource source = create(2 * CHUNK_SIZE, dir);
+        assertReadAt(source, CHUNK_SIZE * 4, 100);
+        assertEquals(1, dir.list().length);
+        source.close();
+        assertTrue(dir.list().length == 0);
+    }
+
+    @Test
+    public void firstUseOfDirRemovesStaleSpills() throws IOException {
+        File dir = folder.newFolder();
+        // 上次进程被杀留下的临时文件
+        File stale = new File(dir, "chunk123.spill");
+        assertTrue(stale.createNewFile());
+        File other = new File(dir, "keep.txt");
+        assertTrue(other.createNewFile());
+        ChunkedStreamMediaDataSource source = create(2 * CHUNK_SIZE, dir);
+        assertTrue(!stale.exists());
+        assertTrue(other.exists());
+        source.close();
+    }
+}
@@ -0,0 +1,73 @@
+package com.zyu.ijkplayer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FijkPlayerPoolTest {
+
+    private final TestEngine mEngine = new TestEngine();
+    private int mCreated = 0;
+    private FijkPlayerPool mPool;
+
+    @Before
+    public void setUp() {
+        mPool = new FijkPlayerPool(new FijkPlayerPool.Factory() {
+            @Override
+            public FijkPlayer create() {
+                mCreated++;
+                return new FijkPlayer(mEngine, true);
+            }
+        }, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        }, new PlayerReaper());
+    }
+
+    @Test
+    public void acquireFromEmptyPoolReturnsNull() {
+        assertNull(mPool.acquire());
+        assertEquals(0, mCreated);
+    }
+
+    @Test
+    public void recycledPlayerGetsFreshId() {
+        FijkPlayer player = new FijkPlayer(mEngine, true);
+        int oldId = player.getPlayerId();
+        assertTrue(mPool.recycle(player));
+        FijkPlayer reused = mPool.acquire();
+        assertSame(player, reused);
+        assertNotEquals(oldId, reused.getPlayerId());
+    }
+
+    @Test
+    public void recycleRespectsMaxSize() {
+        mPool.configure(0, 1, 0);
+        assertTrue(mPool.recycle(new FijkPlayer(mEngine, true)));
+        assertFalse(mPool.recycle(new FijkPlayer(mEngine, true)));
+        assertEquals(1, mPool.idleCount());
+    }
+
+    @Test
+    public void configureWarmsAndTrimsToLimits() {
+        mPool.configure(2, 3, 0);
+        assertEquals(2, mCreated);
+        assertEquals(2, mPool.idleCount());
+        mPool.recycle(new FijkPlayer(mEngine, true));
+        assertEquals(3, mPool.idleCount());
+        mPool.configure(1, 1, 0);
+        assertEquals(1, mPool.idleCount());
+        mPool.clear();
+        assertEquals(0, mPool.idleCount());
+    }
+}
@@ -0,0 +1,28 @@
+package com.zyu.ijkplayer;
+
+import org.junit.Test;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FijkPlayerTest {
+
+    // ffmpeg 的 FFERRTAG(0xF8, '4', '0', '4')
+    private static final int AVERROR_HTTP_NOT_FOUND = -(0xF8 | ('4' << 8) | ('0' << 16) | ('4' << 24));
+    private static final int AVERROR_ECONNRESET = -104;
+
+    @Test
+    public void networkErrorsAreNotDecoderErrors() {
+        assertFalse(FijkPlayer.isDecoderError(IMediaPlayer.MEDIA_ERROR_IO));
+        assertFalse(FijkPlayer.isDecoderError(IMediaPlayer.MEDIA_ERROR_TIMED_OUT));
+        assertFalse(FijkPlayer.isDecoderError(AVERROR_HTTP_NOT_FOUND));
+        assertFalse(FijkPlayer.isDecoderError(AVERROR_ECONNRESET));
+    }
+
+    @Test
+    public void errorsWithoutFfmpegCodeAreDecoderErrors() {
+        assertTrue(FijkPlayer.isDecoderError(0));
+    }
+}
@@ -0,0 +1,117 @@
+package com.zyu.ijkplayer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class FileMediaDataSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createFile(int size) throws IOException {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + 7);
+        }
+        File file = folder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] expected(long position, int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) ((position + i) * 31 + 7);
+        }
+        return data;
+    }
+
+    private void assertReads(int mode) throws IOException {
+        FileMediaDataSource source = new FileMediaDataSource(createFile(10000), mode);
+        assertEquals(10000, source.getSize());
+        byte[] buffer = new byte[100];
+        // 乱序读取，不依赖上一次的读位置
+        long[] positions = {5000, 0, 9950, 1234};
+        for (long position : positions) {
+            int read = source.readAt(position, buffer, 0, buffer.length);
+            int count = (int) Math.min(buffer.length, 10000 - position);
+            assertEquals(count, read);
+            assertArrayEquals(expected(position, count), Arrays.copyOf(buffer, count));
+        }
+        assertEquals(-1, source.readAt(10000, buffer, 0, buffer.length));
+        assertEquals(0, source.readAt(0, buffer, 0, 0));
+        source.close();
+    }
+
+    @Test
+    public void readsInRandomAccessMode() throws IOException {
+        assertReads(FileMediaDataSource.MODE_RANDOM_ACCESS);
+    }
+
+    @Test
+    public void readsInMappedMode() throws IOException {
+        assertReads(FileMediaDataSource.MODE_MAPPED);
+    }
+
+    @Test
+    public void readsInChannelMode() throws IOException {
+        assertReads(FileMediaDataSource.MODE_CHANNEL);
+    }
+
+    @Test
+    public void readAfterCloseReturnsEof() throws IOException {
+        int[] modes = {FileMediaDataSource.MODE_RANDOM_ACCESS, FileMediaDataSource.MODE_MAPPED,
+                FileMediaDataSource.MODE_CHANNEL};
+        for (int mode : modes) {
+            FileMediaDataSource source = new FileMediaDataSource(createFile(1000), mode);
+            source.close();
+            assertEquals(-1, source.readAt(0, new byte[10], 0, 10));
+        }
+    }
+
+    @Test
+    public void closeRacingWithReadsDoesNotThrow() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            final FileMediaDataSource source = new FileMediaDataSource(createFile(64 * 1024),
+                    FileMediaDataSource.MODE_CHANNEL);
+            final CountDownLatch started = new CountDownLatch(1);
+            final AtomicReference<Throwable> failure = new AtomicReference<>();
+            Thread reader = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    byte[] buffer = new byte[512];
+                    started.countDown();
+                    try {
+                        for (int i = 0; i < 2000; i++) {
+                            source.readAt((i * 512L) % (64 * 1024), buffer, 0, buffer.length);
+                        }
+                    } catch (Throwable t) {
+                        failure.set(t);
+                    }
+                }
+            });
+            reader.start();
+            started.await();
+            source.close();
+            reader.join();
+            assertNull(failure.get());
+        }
+    }
+}
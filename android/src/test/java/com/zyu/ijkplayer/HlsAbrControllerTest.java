@@ -0,0 +1,170 @@
+package com.zyu.ijkplayer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 本地 http 服务提供主列表和各码率子列表，验证选档、带宽估计和序号对齐
+ */
+public class HlsAbrControllerTest {
+
+    private static final String MASTER = "#EXTM3U\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=2000000,RESOLUTION=1280x720\nhigh.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=500000,RESOLUTION=640x360\nlow.m3u8\n"
+            + "#EXT-X-STREAM-INF:BANDWIDTH=1000000,RESOLUTION=960x540\nmid.m3u8\n";
+
+    private final Map<String, String> mFiles = new ConcurrentHashMap<>();
+    private HttpServer mOrigin;
+    private long mBufferedMs = -1;
+
+    @Before
+    public void setUp() throws IOException {
+        mOrigin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mOrigin.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String text = mFiles.get(exchange.getRequestURI().getPath());
+                if (text == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+                byte[] body = text.getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/vnd.apple.mpegurl");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        mOrigin.start();
+        mFiles.put("/master.m3u8", MASTER);
+        mFiles.put("/low.m3u8", media(100, 5, "low"));
+        mFiles.put("/mid.m3u8", media(100, 5, "mid"));
+        mFiles.put("/high.m3u8", media(100, 5, "high"));
+    }
+
+    @After
+    public void tearDown() {
+        mOrigin.stop(0);
+    }
+
+    private static String media(long sequence, int count, String name) {
+        StringBuilder sb = new StringBuilder("#EXTM3U\n#EXT-X-TARGETDURATION:4\n#EXT-X-MEDIA-SEQUENCE:")
+                .append(sequence).append('\n');
+        for (int i = 0; i < count; i++) {
+            sb.append("#EXTINF:4.0,\n").append(name).append('/').append(sequence + i).append(".ts\n");
+        }
+        return sb.append("#EXT-X-ENDLIST\n").toString();
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + mOrigin.getAddress().getPort() + path;
+    }
+
+    private HlsAbrController controller(HlsAbrController.Rules rules) {
+        return new HlsAbrController(1, url("/master.m3u8"), rules, new HlsAbrController.BufferProbe() {
+            @Override
+            public long bufferedMs() {
+                return mBufferedMs;
+            }
+        });
+    }
+
+    private static HlsAbrController.Rules startAtLowest() {
+        HlsAbrController.Rules rules = new HlsAbrController.Rules();
+        rules.startupIndex = 0;
+        return rules;
+    }
+
+    @Test
+    public void virtualPlaylistKeepsSequenceNumbers() throws IOException {
+        String playlist = controller(startAtLowest()).buildPlaylist("http://proxy/abr/1/");
+        assertTrue(playlist.contains("http://proxy/abr/1/100.ts\n"));
+        assertTrue(playlist.contains("http://proxy/abr/1/104.ts\n"));
+        assertTrue(playlist.contains("#EXT-X-MEDIA-SEQUENCE:100"));
+    }
+
+    @Test
+    public void estimateIsBiasCorrected() {
+        HlsAbrController abr = controller(startAtLowest());
+        assertEquals(0, abr.getEstimate());
+        // 太小的样本不计入
+        abr.onTransfer(1024, 100);
+        assertEquals(0, abr.getEstimate());
+        abr.onTransfer(1000000, 1000);
+        assertEquals(8000000, abr.getEstimate(), 1);
+    }
+
+    @Test
+    public void switchesToHighestVariantTheEstimateAllows() throws IOException {
+        HlsAbrController abr = controller(startAtLowest());
+        assertTrue(abr.selectSegment(100).endsWith("/low/100.ts"));
+        // 1.6Mbps 的 75% 只够中间档
+        abr.onTransfer(200000, 1000);
+        assertTrue(abr.selectSegment(101).endsWith("/mid/101.ts"));
+        abr.onTransfer(10000000, 1000);
+        assertTrue(abr.selectSegment(102).endsWith("/high/102.ts"));
+    }
+
+    @Test
+    public void lowBufferBlocksUpswitchAndPanicForcesDownswitch() throws IOException {
+        HlsAbrController.Rules rules = new HlsAbrController.Rules();
+        rules.startupIndex = 1;
+        HlsAbrController abr = controller(rules);
+        assertTrue(abr.selectSegment(100).endsWith("/mid/100.ts"));
+        abr.onTransfer(10000000, 1000);
+        mBufferedMs = 5000;
+        assertTrue(abr.selectSegment(101).endsWith("/mid/101.ts"));
+        mBufferedMs = 1000;
+        assertTrue(abr.selectSegment(102).endsWith("/low/102.ts"));
+    }
+
+    @Test
+    public void maxBitrateCapsSelection() throws IOException {
+        HlsAbrController.Rules rules = startAtLowest();
+        rules.maxBitrate = 1000000;
+        HlsAbrController abr = controller(rules);
+        abr.selectSegment(100);
+        abr.onTransfer(10000000, 1000);
+        assertTrue(abr.selectSegment(101).endsWith("/mid/101.ts"));
+    }
+
+    @Test
+    public void staysOnCurrentVariantWhenTargetLacksSequence() throws IOException {
+        mFiles.put("/high.m3u8", media(200, 5, "high"));
+        HlsAbrController abr = controller(startAtLowest());
+        abr.selectSegment(100);
+        abr.onTransfer(10000000, 1000);
+        assertTrue(abr.selectSegment(101).endsWith("/low/101.ts"));
+    }
+
+    @Test
+    public void overflowingBandwidthFallsBackToOriginalPlaylist() throws IOException {
+        mFiles.put("/master.m3u8", MASTER.replace("BANDWIDTH=2000000", "BANDWIDTH=99999999999999999999"));
+        HlsAbrController abr = controller(startAtLowest());
+        assertNull(abr.buildPlaylist("http://proxy/abr/1/"));
+        assertNull(abr.selectSegment(100));
+    }
+
+    @Test
+    public void badMediaSequenceFallsBackToOriginalPlaylist() throws IOException {
+        mFiles.put("/low.m3u8", media(100, 5, "low").replace("SEQUENCE:100", "SEQUENCE:99999999999999999999"));
+        assertNull(controller(startAtLowest()).buildPlaylist("http://proxy/abr/1/"));
+    }
+}
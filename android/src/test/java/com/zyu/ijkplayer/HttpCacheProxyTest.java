@@ -0,0 +1,156 @@
+package com.zyu.ijkplayer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class HttpCacheProxyTest {
+
+    private static final int SIZE = 200 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] mData = new byte[SIZE];
+    private final AtomicInteger mOriginRequests = new AtomicInteger();
+    private HttpServer mOrigin;
+    private HttpCacheProxy mProxy;
+    private String mUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        for (int i = 0; i < SIZE; i++) {
+            mData[i] = (byte) (i * 7 + 1);
+        }
+        mOrigin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mOrigin.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mOriginRequests.incrementAndGet();
+                int start = 0;
+                int end = SIZE - 1;
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                if (range != null) {
+                    String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                    start = Integer.parseInt(bounds[0]);
+                    if (bounds[1].length() > 0)
+                        end = Math.min(end, Integer.parseInt(bounds[1]));
+                    exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + SIZE);
+                }
+                exchange.getResponseHeaders().add("Content-Type", "video/mp4");
+                exchange.sendResponseHeaders(range != null ? 206 : 200, end - start + 1);
+                OutputStream out = exchange.getResponseBody();
+                out.write(mData, start, end - start + 1);
+                out.close();
+            }
+        });
+        mOrigin.start();
+        mUrl = "http://127.0.0.1:" + mOrigin.getAddress().getPort() + "/video.mp4";
+        mProxy = new HttpCacheProxy(HttpCacheStore.obtain(folder.newFolder(), HttpCacheStore.DEFAULT_MAX_BYTES));
+        mProxy.start();
+    }
+
+    @After
+    public void tearDown() {
+        mProxy.shutdown();
+        mOrigin.stop(0);
+    }
+
+    private byte[] get(String url) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setReadTimeout(5000);
+        InputStream in = conn.getInputStream();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            bos.write(buffer, 0, read);
+        }
+        in.close();
+        conn.disconnect();
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void cachedContentIsServedFromDisk() throws IOException {
+        assertArrayEquals(mData, get(mProxy.proxyUrl(mUrl)));
+        int requests = mOriginRequests.get();
+        assertArrayEquals(mData, get(mProxy.proxyUrl(mUrl)));
+        assertEquals(requests, mOriginRequests.get());
+    }
+
+    @Test(timeout = 10000)
+    public void truncatedDataFileFallsBackToOrigin() throws IOException {
+        HttpCacheProxy.ConnectionCallback callback = new HttpCacheProxy.ConnectionCallback() {
+            @Override
+            public void onConnection(HttpURLConnection conn) {
+            }
+        };
+        assertEquals(SIZE, mProxy.prefetch(mUrl, 0, -1, callback));
+        // 数据文件在索引之外被截断，索引仍认为整段已缓存
+        HttpCacheStore.Entry entry = mProxy.getStore().open(mUrl);
+        File file = entry.file;
+        mProxy.getStore().release(entry);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(SIZE / 2);
+        raf.close();
+        assertArrayEquals(mData, get(mProxy.proxyUrl(mUrl)));
+    }
+
+    private String proxyBase() {
+        String url = mProxy.proxyUrl(mUrl);
+        return url.substring(0, url.indexOf("/c/"));
+    }
+
+    @Test
+    public void malformedEscapeIsRejected() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(proxyBase() + "/c/x?u=%zz").openConnection();
+        conn.setReadTimeout(5000);
+        assertEquals(400, conn.getResponseCode());
+        conn.disconnect();
+    }
+
+    @Test
+    public void oversizedRangeIsIgnored() throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(mProxy.proxyUrl(mUrl)).openConnection();
+        conn.setReadTimeout(5000);
+        conn.setRequestProperty("Range", "bytes=99999999999999999999-");
+        assertEquals(200, conn.getResponseCode());
+        conn.disconnect();
+    }
+
+    @Test
+    public void nonHttpUrlIsNotOpened() throws IOException {
+        File file = folder.newFile("local.mp4");
+        String url = proxyBase() + "/c/local.mp4?u=" + URLEncoder.encode(file.toURI().toString(), "UTF-8");
+        try {
+            get(url);
+            fail();
+        } catch (IOException expected) {
+        }
+        // 代理仍然可用
+        assertArrayEquals(mData, get(mProxy.proxyUrl(mUrl)));
+    }
+}
@@ -0,0 +1,122 @@
+package com.zyu.ijkplayer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HttpCacheStoreTest {
+
+    private static final String URL = "http://example.com/video.mp4";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void rangesMergeAndSplit() {
+        HttpCacheStore.Entry entry = new HttpCacheStore.Entry("k", URL, new File("unused"));
+        assertEquals(100, entry.addRange(0, 100));
+        assertEquals(100, entry.addRange(200, 300));
+        assertEquals("0-100,200-300", entry.encodeRanges());
+        assertEquals(50, entry.cachedLength(50));
+        assertEquals(0, entry.cachedLength(150));
+        assertEquals(200, entry.nextCachedStart(100));
+        assertEquals(-1, entry.nextCachedStart(250));
+        // 相接和重叠的区间合并
+        assertEquals(100, entry.addRange(100, 250));
+        assertEquals("0-300", entry.encodeRanges());
+        assertEquals(0, entry.addRange(10, 20));
+
+        assertEquals(100, entry.removeRange(50, 150));
+        assertEquals("0-50,150-300", entry.encodeRanges());
+        assertEquals(50, entry.removeRange(0, 60));
+        assertEquals("150-300", entry.encodeRanges());
+        assertEquals(0, entry.removeRange(0, 100));
+        assertEquals(150, entry.cachedBytes());
+    }
+
+    @Test
+    public void completeWhenSingleRangeCoversLength() {
+        HttpCacheStore.Entry entry = new HttpCacheStore.Entry("k", URL, new File("unused"));
+        entry.setLength(1000);
+        entry.addRange(0, 500);
+        assertFalse(entry.isComplete());
+        entry.addRange(500, 1000);
+        assertTrue(entry.isComplete());
+    }
+
+    @Test
+    public void obtainSharesOneStorePerDirectory() throws IOException {
+        File dir = folder.newFolder();
+        HttpCacheStore first = HttpCacheStore.obtain(dir, HttpCacheStore.DEFAULT_MAX_BYTES);
+        HttpCacheStore second = HttpCacheStore.obtain(new File(dir.getPath()), HttpCacheStore.DEFAULT_MAX_BYTES);
+        assertSame(first, second);
+        first.close();
+        // 还有一个使用者，仍然是同一个实例
+        assertSame(second, HttpCacheStore.obtain(dir, HttpCacheStore.DEFAULT_MAX_BYTES));
+        second.close();
+        second.close();
+        HttpCacheStore third = HttpCacheStore.obtain(dir, HttpCacheStore.DEFAULT_MAX_BYTES);
+        assertNotSame(first, third);
+        third.close();
+    }
+
+    @Test
+    public void indexSurvivesReopen() throws IOException {
+        File dir = folder.newFolder();
+        HttpCacheStore store = HttpCacheStore.obtain(dir, HttpCacheStore.DEFAULT_MAX_BYTES);
+        HttpCacheStore.Entry entry = store.open(URL);
+        byte[] data = new byte[1000];
+        entry.write(0, data, 0, data.length);
+        entry.setLength(4000);
+        entry.setMime("video/mp4");
+        store.commit(entry, 0, 1000);
+        store.release(entry);
+        store.close();
+
+        store = HttpCacheStore.obtain(dir, HttpCacheStore.DEFAULT_MAX_BYTES);
+        assertTrue(store.contains(URL));
+        assertEquals(1000, store.getTotalBytes());
+        entry = store.open(URL);
+        assertEquals(4000, entry.getLength());
+        assertEquals("video/mp4", entry.getMime());
+        assertEquals(1000, entry.cachedLength(0));
+        store.release(entry);
+        store.close();
+    }
+
+    @Test
+    public void invalidateDropsRangeAndBytes() throws IOException {
+        HttpCacheStore store = HttpCacheStore.obtain(folder.newFolder(), HttpCacheStore.DEFAULT_MAX_BYTES);
+        HttpCacheStore.Entry entry = store.open(URL);
+        store.commit(entry, 0, 1000);
+        store.invalidate(entry, 400, 1000);
+        assertEquals(400, entry.cachedLength(0));
+        assertEquals(400, store.getTotalBytes());
+        store.release(entry);
+        store.close();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedWhenOverLimit() throws IOException {
+        HttpCacheStore store = HttpCacheStore.obtain(folder.newFolder(), 1500);
+        HttpCacheStore.Entry old = store.open(URL);
+        store.commit(old, 0, 1000);
+        store.release(old);
+        HttpCacheStore.Entry recent = store.open(URL + "?2");
+        store.commit(recent, 0, 1000);
+        store.release(recent);
+        assertFalse(store.contains(URL));
+        assertTrue(store.contains(URL + "?2"));
+        assertEquals(1000, store.getTotalBytes());
+        store.close();
+    }
+}
@@ -0,0 +1,109 @@
+package com.zyu.ijkplayer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PlayerCommandDispatcherTest {
+
+    private final PlayerCommandDispatcher mDispatcher = new PlayerCommandDispatcher();
+
+    @Test
+    public void commandsForOnePlayerRunInOrderOneAtATime() throws InterruptedException {
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<Integer>());
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(50);
+        for (int i = 0; i < 50; i++) {
+            final int index = i;
+            mDispatcher.execute(1, new Runnable() {
+                @Override
+                public void run() {
+                    int now = active.incrementAndGet();
+                    maxActive.set(Math.max(maxActive.get(), now));
+                    order.add(index);
+                    active.decrementAndGet();
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxActive.get());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+    }
+
+    @Test
+    public void blockedPlayerDoesNotHoldUpOthers() throws InterruptedException {
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final CountDownLatch other = new CountDownLatch(1);
+        mDispatcher.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    unblock.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        mDispatcher.execute(2, new Runnable() {
+            @Override
+            public void run() {
+                other.countDown();
+            }
+        });
+        assertTrue(other.await(5, TimeUnit.SECONDS));
+        unblock.countDown();
+    }
+
+    @Test
+    public void failingCommandDoesNotStallQueue() throws InterruptedException {
+        final CountDownLatch next = new CountDownLatch(1);
+        mDispatcher.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("boom");
+            }
+        });
+        mDispatcher.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                next.countDown();
+            }
+        });
+        assertTrue(next.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void removeLetsQueuedCommandsFinish() throws InterruptedException {
+        final CountDownLatch unblock = new CountDownLatch(1);
+        final CountDownLatch queued = new CountDownLatch(1);
+        mDispatcher.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    unblock.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        mDispatcher.execute(1, new Runnable() {
+            @Override
+            public void run() {
+                queued.countDown();
+            }
+        });
+        mDispatcher.remove(1);
+        unblock.countDown();
+        assertTrue(queued.await(5, TimeUnit.SECONDS));
+    }
+}
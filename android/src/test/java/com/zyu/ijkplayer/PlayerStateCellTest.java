@@ -0,0 +1,91 @@
+package com.zyu.ijkplayer;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * JVM 上 SystemClock 恒为 0，位置不会外推，只验证写入、截断和读写一致性
+ */
+public class PlayerStateCellTest {
+
+    @Test
+    public void readsLatestUpdate() {
+        PlayerStateCell cell = new PlayerStateCell();
+        cell.update(FijkPlayer.STATE_STARTED, 1500, 60000, true);
+        cell.setBufferedPosition(8000);
+        PlayerStateCell.Snapshot snapshot = new PlayerStateCell.Snapshot();
+        cell.read(snapshot);
+        assertEquals(FijkPlayer.STATE_STARTED, snapshot.state);
+        assertEquals(1500, snapshot.position);
+        assertEquals(60000, snapshot.duration);
+        assertEquals(8000, snapshot.bufferedPosition);
+
+        cell.reanchor(2000);
+        cell.read(snapshot);
+        assertEquals(2000, snapshot.position);
+    }
+
+    @Test
+    public void clampsPositionToDurationAndBufferedToPosition() {
+        PlayerStateCell cell = new PlayerStateCell();
+        cell.update(FijkPlayer.STATE_STARTED, 70000, 60000, false);
+        cell.setBufferedPosition(1000);
+        PlayerStateCell.Snapshot snapshot = new PlayerStateCell.Snapshot();
+        cell.read(snapshot);
+        assertEquals(60000, snapshot.position);
+        assertEquals(60000, snapshot.bufferedPosition);
+
+        // 直播等没有时长时不截断
+        cell.update(FijkPlayer.STATE_STARTED, 70000, 0, false);
+        cell.read(snapshot);
+        assertEquals(70000, snapshot.position);
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        PlayerStateCell cell = new PlayerStateCell();
+        cell.update(FijkPlayer.STATE_PAUSED, 1500, 60000, false);
+        cell.setSpeed(2f, 1500);
+        cell.setBufferedPosition(8000);
+        cell.reset();
+        PlayerStateCell.Snapshot snapshot = new PlayerStateCell.Snapshot();
+        cell.read(snapshot);
+        assertEquals(FijkPlayer.STATE_IDLE, snapshot.state);
+        assertEquals(0, snapshot.position);
+        assertEquals(0, snapshot.duration);
+        assertEquals(0, snapshot.bufferedPosition);
+    }
+
+    @Test
+    public void readerNeverSeesTornWrite() throws InterruptedException {
+        final PlayerStateCell cell = new PlayerStateCell();
+        final AtomicBoolean stop = new AtomicBoolean();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long i = 1;
+                while (!stop.get()) {
+                    cell.update(FijkPlayer.STATE_STARTED, i, i * 2, false);
+                    i++;
+                }
+            }
+        });
+        writer.start();
+        boolean torn = false;
+        PlayerStateCell.Snapshot snapshot = new PlayerStateCell.Snapshot();
+        try {
+            for (int i = 0; i < 200000 && !torn; i++) {
+                cell.read(snapshot);
+                torn = snapshot.duration != snapshot.position * 2;
+            }
+        } finally {
+            stop.set(true);
+            writer.join();
+        }
+        assertFalse(torn);
+    }
+}
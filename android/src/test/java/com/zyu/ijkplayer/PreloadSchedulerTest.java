@@ -0,0 +1,123 @@
+package com.zyu.ijkplayer;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PreloadSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger mActive = new AtomicInteger();
+    private final CountDownLatch mRelease = new CountDownLatch(1);
+    private ExecutorService mOriginThreads;
+    private HttpServer mOrigin;
+    private HttpCacheProxy mProxy;
+    private PreloadScheduler mScheduler;
+
+    @Before
+    public void setUp() throws IOException {
+        mOriginThreads = Executors.newCachedThreadPool();
+        mOrigin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mOrigin.setExecutor(mOriginThreads);
+        mOrigin.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                mActive.incrementAndGet();
+                try {
+                    // 源站一直挂起，直到测试放行
+                    mRelease.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                byte[] body = new byte[1024];
+                exchange.getResponseHeaders().add("Content-Type", "video/mp4");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+                mActive.decrementAndGet();
+            }
+        });
+        mOrigin.start();
+        mProxy = new HttpCacheProxy(HttpCacheStore.obtain(folder.newFolder(), HttpCacheStore.DEFAULT_MAX_BYTES));
+        mScheduler = new PreloadScheduler(mProxy);
+    }
+
+    @After
+    public void tearDown() {
+        mRelease.countDown();
+        mScheduler.shutdown();
+        mProxy.shutdown();
+        mOrigin.stop(0);
+        mOriginThreads.shutdownNow();
+    }
+
+    private String url(int i) {
+        return "http://127.0.0.1:" + mOrigin.getAddress().getPort() + "/video" + i + ".mp4";
+    }
+
+    private static void waitFor(AtomicInteger counter, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (counter.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(expected, counter.get());
+    }
+
+    @Test
+    public void runsUpToMaxConcurrentDownloadsInParallel() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            mScheduler.preload(url(i), 1024, 0, 0);
+        }
+        waitFor(mActive, PreloadScheduler.DEFAULT_MAX_CONCURRENT);
+        Thread.sleep(200);
+        assertEquals(PreloadScheduler.DEFAULT_MAX_CONCURRENT, mActive.get());
+        assertEquals(PreloadScheduler.DEFAULT_MAX_CONCURRENT, mScheduler.getRunningCount());
+
+        mScheduler.setMaxConcurrent(4);
+        waitFor(mActive, 4);
+        assertEquals(4, mScheduler.getRunningCount());
+
+        mRelease.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (mScheduler.getRunningCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, mScheduler.getRunningCount());
+        assertTrue(mProxy.getStore().contains(url(0)));
+        assertTrue(mScheduler.onPlaybackRequested(url(3)));
+    }
+
+    @Test
+    public void cancelledPendingTaskNeverStarts() throws InterruptedException {
+        mScheduler.setMaxConcurrent(1);
+        mScheduler.preload(url(0), 1024, 0, 0);
+        mScheduler.preload(url(1), 1024, 0, 0);
+        waitFor(mActive, 1);
+        mScheduler.cancel(url(1));
+        mRelease.countDown();
+        Thread.sleep(300);
+        assertEquals(0, mScheduler.getRunningCount());
+        assertTrue(mProxy.getStore().contains(url(0)));
+        assertTrue(!mProxy.getStore().contains(url(1)));
+    }
+}
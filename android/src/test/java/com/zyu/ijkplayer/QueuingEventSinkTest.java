@@ -0,0 +1,71 @@
+package com.zyu.ijkplayer;
+
+import com.facebook.react.bridge.JavaOnlyMap;
+import com.facebook.react.bridge.WritableMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 没有 delegate 时事件只入队不发送，只验证入队时的合并和丢弃
+ */
+public class QueuingEventSinkTest {
+
+    private static WritableMap event(int value) {
+        WritableMap map = new JavaOnlyMap();
+        map.putInt("value", value);
+        return map;
+    }
+
+    @Test
+    public void coalescesLatestValuePerPlayerAndType() {
+        QueuingEventSink sink = new QueuingEventSink(16);
+        for (int i = 0; i < 10; i++) {
+            sink.success(1, QueuingEventSink.TYPE_PROGRESS, event(i));
+        }
+        sink.success(2, QueuingEventSink.TYPE_PROGRESS, event(0));
+        sink.success(1, QueuingEventSink.TYPE_BUFFERING, event(0));
+        assertEquals(3, sink.size());
+        assertEquals(9, sink.getCoalescedCount());
+        assertEquals(0, sink.getDroppedCount());
+    }
+
+    @Test
+    public void dropsOldestDroppableEventWhenFull() {
+        QueuingEventSink sink = new QueuingEventSink(4);
+        for (int i = 0; i < 6; i++) {
+            sink.success(i, QueuingEventSink.TYPE_PROGRESS, event(i));
+        }
+        assertEquals(4, sink.size());
+        assertEquals(2, sink.getDroppedCount());
+        // 被丢弃的合并事件不再参与合并，重新入队
+        sink.success(0, QueuingEventSink.TYPE_PROGRESS, event(0));
+        assertEquals(4, sink.size());
+        assertEquals(3, sink.getDroppedCount());
+    }
+
+    @Test
+    public void terminalEventsAreNeverDroppedOrCoalesced() {
+        QueuingEventSink sink = new QueuingEventSink(2);
+        sink.success(1, QueuingEventSink.TYPE_ERROR, event(0));
+        sink.success(1, QueuingEventSink.TYPE_ERROR, event(1));
+        sink.success(1, QueuingEventSink.TYPE_SUMMARY, event(2));
+        for (int i = 0; i < 5; i++) {
+            sink.success(i, QueuingEventSink.TYPE_STATE, event(i));
+        }
+        assertEquals(5, sink.size());
+        assertEquals(3, sink.getDroppedCount());
+        assertEquals(0, sink.getCoalescedCount());
+    }
+
+    @Test
+    public void eventsWithoutPlayerCoalesceBySource() {
+        QueuingEventSink sink = new QueuingEventSink(8);
+        sink.success("storyboard-a", QueuingEventSink.TYPE_STORYBOARD, event(0));
+        sink.success("storyboard-a", QueuingEventSink.TYPE_STORYBOARD, event(1));
+        sink.success("storyboard-b", QueuingEventSink.TYPE_STORYBOARD, event(0));
+        assertEquals(2, sink.size());
+        assertEquals(1, sink.getCoalescedCount());
+    }
+}
@@ -0,0 +1,67 @@
+package com.zyu.ijkplayer;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * 测试用的 FijkEngine，播放器线程上的任务直接在调用线程执行
+ */
+class TestEngine implements FijkEngine {
+
+    @Nullable
+    @Override
+    public Object createSurfaceEntry() {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Object messenger() {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Context context() {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public String lookupKeyForAsset(@NonNull String asset, @Nullable String packageName) {
+        return asset;
+    }
+
+    @Override
+    public void onPlayingChange(int delta) {
+    }
+
+    @Override
+    public void onPlayableChange(int delta) {
+    }
+
+    @Override
+    public void setScreenOn(boolean on) {
+    }
+
+    @Override
+    public void audioFocus(boolean request) {
+    }
+
+    @Nullable
+    @Override
+    public HttpCacheProxy cacheProxy() {
+        return null;
+    }
+
+    @Override
+    public void runOnPlayerThread(@NonNull FijkPlayer player, @NonNull Runnable task) {
+        task.run();
+    }
+
+    @Override
+    public void onDecoderAcquired(@NonNull FijkPlayer player) {
+    }
+}
@@ -1,11 +1,22 @@
 'use strict';
 
 import React,{} from 'react';
-import { NativeModules, requireNativeComponent, UIManager, findNodeHandle } from 'react-native';
+import { NativeModules, NativeEventEmitter, requireNativeComponent, UIManager, findNodeHandle } from 'react-native';
 import React, { Component } from 'react';
 
 const { ReactNativeIJKPlayerModule } = NativeModules;
 const ReactNativeIJKPlayerView = requireNativeComponent('ReactNativeIJKPlayerView');
+const playerEventEmitter = new NativeEventEmitter(ReactNativeIJKPlayerModule);
+
+// 原生端按批发送播放器事件，这里逐条分发给回调
+function addPlayerEventListener(listener) {
+	return playerEventEmitter.addListener('fijkplayer', batch => {
+		const events = (batch && batch.events) || [];
+		for (let i = 0; i < events.length; i++) {
+			listener(events[i]);
+		}
+	});
+}
 
 class IJKPlayer extends Component {
 	constructor(props) {
@@ -19,18 +30,27 @@ class IJKPlayer extends Component {
 		this._onEnd = this._onEnd.bind(this);
 		this._onBuffering = this._onBuffering.bind(this);
 		this._onStateChanged = this._onStateChanged.bind(this);
+		this._onPlayerEvent = this._onPlayerEvent.bind(this);
 	}
 
 	async componentDidMount() {
 		try {
 			const result = await ReactNativeIJKPlayerModule.createPlayer();
 			this.setState({ playerId: result.id });
+			if (this.props.statsInterval > 0) {
+				this._eventSubscription = addPlayerEventListener(this._onPlayerEvent);
+				ReactNativeIJKPlayerModule.setStatsInterval(result.id, this.props.statsInterval);
+			}
 		} catch (e) {
 			console.error('Failed to create player', e);
 		}
 	}
 
 	componentWillUnmount() {
+		if (this._eventSubscription) {
+			this._eventSubscription.remove();
+			this._eventSubscription = null;
+		}
 		if (this.state.playerId !== -1) {
 			ReactNativeIJKPlayerModule.releasePlayer(this.state.playerId);
 		}
@@ -72,6 +92,12 @@ class IJKPlayer extends Component {
 		}
 	}
 
+	_onPlayerEvent(event) {
+		if (event.playerId === this.state.playerId && event.event === 'stats' && this.props.onStats) {
+			this.props.onStats(event);
+		}
+	}
+
 	setDataSource(url, options = {}) {
 		if (this.state.playerId !== -1) {
 			return ReactNativeIJKPlayerModule.setDataSource(this.state.playerId, url, options);
@@ -128,6 +154,21 @@ class IJKPlayer extends Component {
 		return Promise.reject(new Error('Player not initialized'));
 	}
 
+	// 同步读取，不需要等待 promise，适合在每帧的回调里调用
+	getPlayerState() {
+		if (this.state.playerId !== -1) {
+			return ReactNativeIJKPlayerModule.getPlayerState(this.state.playerId);
+		}
+		return null;
+	}
+
+	snapshot(options = {}) {
+		if (this.state.playerId !== -1) {
+			return ReactNativeIJKPlayerModule.snapshot(this.state.playerId, options);
+		}
+		return Promise.reject(new Error('Player not initialized'));
+	}
+
 	setScreenOn(on) {
 		return ReactNativeIJKPlayerModule.setScreenOn(on);
 	}
@@ -168,16 +209,16 @@ class IJKPlayer extends Component {
 		);
 	}
 
-	_snapshotCommand() {
+	_snapshotCommand(options = {}) {
 		UIManager.dispatchViewManagerCommand(
 			findNodeHandle(this.playerView),
 			UIManager.getViewManagerConfig('ReactNativeIJKPlayerView').Commands.snapshot,
-			[]
+			[this.state.playerId, options]
 		);
 	}
 
 	render() {
-		const { style, scaleType, volume, mute, ...restProps } = this.props;
+		const { style, scaleType, volume, mute, onStats, statsInterval, ...restProps } = this.props;
 		return (
 			<ReactNativeIJKPlayerView
 				ref={ref => (this.playerView = ref)}
@@ -199,5 +240,5 @@ class IJKPlayer extends Component {
 }
 
 // 导出组件和模块
-export { IJKPlayer, ReactNativeIJKPlayerModule as IJKPlayerModule };
+export { IJKPlayer, ReactNativeIJKPlayerModule as IJKPlayerModule, addPlayerEventListener };
 
@@ -19,6 +19,11 @@ export interface IJKPlayerProps extends ViewProps {
    */
   mute?: boolean;
   
+  /**
+   * 播放进度回调间隔，单位毫秒，默认250
+   */
+  progressUpdateInterval?: number;
+
   /**
    * 视频加载完成回调
    */
@@ -48,6 +53,307 @@ export interface IJKPlayerProps extends ViewProps {
    * 播放状态变化回调
    */
   onStateChanged?: (event: { state: number }) => void;
+
+  /**
+   * ijk内部统计回调，需要设置statsInterval
+   */
+  onStats?: (event: NativeStats) => void;
+
+  /**
+   * 渲染方式，默认 surface；texture 模式下画面归播放器所有，
+   * 列表复用或重新挂载时直接接回，不会黑屏
+   */
+  renderType?: 'surface' | 'texture';
+
+  /**
+   * snapshot 视图命令的结果，失败时带 error
+   */
+  onSnapshot?: (event: SnapshotResult & { error?: string }) => void;
+
+  /**
+   * 内部统计采样间隔(毫秒)，不设置时不采样
+   */
+  statsInterval?: number;
+}
+
+export interface DataSourceOptions {
+  /**
+   * 本地文件读取策略，取值见 FILE_READ_MODE_* 常量，默认内存映射
+   */
+  fileReadMode?: number;
+
+  /**
+   * 本地文件和 asset 的块缓存及预读，true 使用默认参数
+   */
+  blockCache?: boolean | { blockSize?: number; maxBytes?: number; readAhead?: number };
+
+  /**
+   * http(s) 地址经本地代理播放并缓存到磁盘，重复播放不再重复下载
+   */
+  cache?: boolean;
+
+  /**
+   * 开启MediaCodec硬解，解码出错或首帧超时时自动在当前位置改用软解，
+   * 失败的编码和分辨率会记录在本机，之后直接软解
+   */
+  hardwareDecode?: boolean;
+
+  /**
+   * 已知的视频尺寸，开启硬解时在准备前按分辨率档位选择解码方式
+   */
+  videoWidth?: number;
+  videoHeight?: number;
+
+  /**
+   * HLS 多码率主列表按网络状况在分片边界自动切换码率，经本地代理实现，true 使用默认规则
+   */
+  abr?: boolean | AbrRules;
+
+  /**
+   * 内置选项组合，lowLatencyLive 用于 RTMP/HTTP-FLV 低延迟直播
+   */
+  profile?: 'lowLatencyLive';
+
+  /**
+   * 按分类直接设置的 ijk 选项，会覆盖 profile 中的同名选项
+   */
+  format?: IjkOptionMap;
+  codec?: IjkOptionMap;
+  sws?: IjkOptionMap;
+  player?: IjkOptionMap;
+}
+
+export interface AbrRules {
+  /**
+   * 起播档位(按码率从低到高)，不设置时按上次播放的带宽估计选择
+   */
+  startupIndex?: number;
+  /**
+   * 只按估计带宽的这个比例选档，默认0.75
+   */
+  bandwidthFraction?: number;
+  /**
+   * 缓冲低于此值时不升档，默认10000
+   */
+  minBufferForUpMs?: number;
+  /**
+   * 缓冲高于此值时不降档，默认25000
+   */
+  maxBufferForDownMs?: number;
+  /**
+   * 缓冲低于此值时至少降一档，默认3000
+   */
+  panicBufferMs?: number;
+  /**
+   * 最高码率(bit/s)，不设置时不限制
+   */
+  maxBitrate?: number;
+}
+
+export interface AbrState {
+  url: string;
+  /**
+   * 主列表不满足要求时为 false，按原列表播放
+   */
+  active: boolean;
+  currentIndex: number;
+  /**
+   * 带宽估计(bit/s)
+   */
+  bandwidthEstimate: number;
+  switchCount: number;
+  variants: { bandwidth: number; width: number; height: number }[];
+}
+
+export type IjkOptionMap = { [name: string]: number | string | boolean };
+
+export interface StoryboardOptions {
+  /**
+   * 缩略图间隔，默认10000毫秒，片子较长时会自动拉大以满足maxTiles
+   */
+  intervalMs?: number;
+  /**
+   * 单张缩略图宽度，默认160，高度按视频比例
+   */
+  tileWidth?: number;
+  /**
+   * 雪碧图每行张数，默认10
+   */
+  columns?: number;
+  /**
+   * 最多生成的张数，默认200
+   */
+  maxTiles?: number;
+  /**
+   * 优先生成这个位置附近的缩略图
+   */
+  focusMs?: number;
+  quality?: number;
+}
+
+export interface Storyboard {
+  url: string;
+  key: string;
+  spritePath: string;
+  durationMs: number;
+  intervalMs: number;
+  tileWidth: number;
+  tileHeight: number;
+  columns: number;
+  total: number;
+  ready: number;
+  complete: boolean;
+  tiles: { time: number; x: number; y: number; ready: boolean }[];
+}
+
+export interface PlayerState {
+  playerId: number;
+  state: number;
+  /**
+   * 播放中按上次读取的位置和倍速推算，seek 完成前为目标位置
+   */
+  position: number;
+  duration: number;
+  bufferedPosition: number;
+}
+
+export type ExecuteOp =
+  | { op: 'setDataSource'; url: string; options?: Record<string, any> }
+  | { op: 'setOption'; category: number; name: string; value: number | string | boolean }
+  | { op: 'prepareAsync' | 'start' | 'pause' | 'stop' | 'reset' }
+  | { op: 'seekTo'; msec: number }
+  | { op: 'setVolume'; volume: number }
+  | { op: 'setSpeed'; speed: number }
+  | { op: 'setLoopCount'; count: number };
+
+export interface ExecuteResult {
+  ok: boolean;
+  results: { op: string; ok: boolean; error?: string; skipped?: boolean }[];
+}
+
+export interface OpenOptions {
+  /**
+   * 起始位置（毫秒），准备前设置，不会先从 0 开始播放
+   */
+  startAt?: number;
+  /**
+   * 准备完成后自动播放，默认 true
+   */
+  autoplay?: boolean;
+  /**
+   * 与 setDataSource 的 options 相同
+   */
+  options?: Record<string, any>;
+}
+
+export interface LifecyclePolicy {
+  /**
+   * 进入后台时暂停正在播放的播放器，默认false
+   */
+  pauseOnBackground?: boolean;
+  /**
+   * 回到前台时继续播放因进入后台而暂停的播放器，默认false
+   */
+  resumeOnForeground?: boolean;
+  /**
+   * 系统 onTrimMemory 达到该级别(TRIM_MEMORY_*)时挂起未在播放的播放器，释放解码器和缓冲，
+   * 只保留地址和位置，再次使用时自动恢复；null 不挂起(默认)
+   */
+  suspendOnTrimLevel?: number | null;
+  /**
+   * 回到前台时提前在原位置重新准备被挂起的播放器，默认true
+   */
+  restoreOnForeground?: boolean;
+}
+
+export interface PlaylistOptions extends DataSourceOptions {
+  /**
+   * 从第几项开始，默认0
+   */
+  startIndex?: number;
+  /**
+   * 准备完成后自动播放，默认true
+   */
+  autoplay?: boolean;
+}
+
+export interface SnapshotOptions {
+  /**
+   * 默认 jpeg
+   */
+  format?: 'jpeg' | 'png';
+  /**
+   * jpeg 质量 0-100，默认 90
+   */
+  quality?: number;
+  /**
+   * 按宽高比缩小到此范围内
+   */
+  maxWidth?: number;
+  maxHeight?: number;
+  /**
+   * 保存路径，不传时写入缓存目录，缓存目录只保留最近的 20 张
+   */
+  path?: string;
+  /**
+   * 同时返回 base64 数据
+   */
+  base64?: boolean;
+}
+
+export interface SnapshotResult {
+  path: string;
+  width: number;
+  height: number;
+  base64?: string;
+}
+
+export interface NativeStats {
+  sampledAt: number;
+  videoCachedDurationMs: number;
+  audioCachedDurationMs: number;
+  videoCachedBytes: number;
+  audioCachedBytes: number;
+  videoCachedPackets: number;
+  audioCachedPackets: number;
+  tcpSpeed: number;
+  bitRate: number;
+  dropFrameRate: number;
+  decodeFps: number;
+  outputFps: number;
+  seekLoadDurationMs: number;
+  trafficBytes: number;
+}
+
+export interface PlaybackStats {
+  prepareMs: number;
+  timeToFirstFrameMs: number;
+  timeToFirstAudioMs: number;
+  rebufferCount: number;
+  stallTotalMs: number;
+  stalled: boolean;
+  recentStallsMs: number[];
+  seekCount: number;
+  seekAverageMs: number;
+  seekMaxMs: number;
+  recentSeeksMs: number[];
+}
+
+export interface ReleaseStats {
+  queueDepth: number;
+  released: number;
+  overflow: number;
+  lastReleaseMs: number;
+  averageReleaseMs: number;
+  maxReleaseMs: number;
+}
+
+export interface BlockCacheStats {
+  hits: number;
+  misses: number;
+  prefetches: number;
+  blockSize: number;
+  cachedBytes: number;
 }
 
 export interface IJKPlayerModule {
@@ -64,6 +370,20 @@ export interface IJKPlayerModule {
   STATE_STOPPED: number;
   STATE_ERROR: number;
   STATE_END: number;
+
+  /**
+   * 本地文件读取策略
+   */
+  FILE_READ_MODE_RANDOM_ACCESS: number;
+  FILE_READ_MODE_MAPPED: number;
+  FILE_READ_MODE_CHANNEL: number;
+
+  /**
+   * onTrimMemory 级别，用于 LifecyclePolicy.suspendOnTrimLevel
+   */
+  TRIM_MEMORY_RUNNING_LOW: number;
+  TRIM_MEMORY_UI_HIDDEN: number;
+  TRIM_MEMORY_BACKGROUND: number;
   
   /**
    * 创建播放器实例
@@ -74,12 +394,98 @@ export interface IJKPlayerModule {
    * 释放播放器实例
    */
   releasePlayer(playerId: number): Promise<void>;
+
+  /**
+   * 创建播放器并完成 setDataSource、prepareAsync 和 start，只经过一次 bridge
+   */
+  open(url: string, options?: OpenOptions): Promise<{ id: number }>;
+
+  /**
+   * 在播放器线程上按顺序执行一组操作，默认遇到失败后跳过剩余操作
+   */
+  execute(playerId: number, ops: ExecuteOp[], options?: { continueOnError?: boolean }): Promise<ExecuteResult>;
   
+  /**
+   * 配置播放器池，createPlayer 优先复用池中已创建好的播放器
+   */
+  configurePlayerPool(config: { minSize?: number; maxSize?: number; idleTimeoutMs?: number }): Promise<void>;
+
+  /**
+   * 配置前后台切换和内存紧张时的处理，未传的字段保持不变
+   */
+  setLifecyclePolicy(policy: LifecyclePolicy): Promise<void>;
+
+  /**
+   * 同时准备、播放或暂停中的播放器上限，超出时把最久未使用的暂停中的播放器挂起，
+   * 只保留地址和位置，再次start/seekTo时自动在原位置重新准备；0不限制(默认)。
+   * 列表播放预先准备下一项的隐藏播放器也计入上限，并且最先被挂起，届时切换不再无缝
+   */
+  setDecoderBudget(maxActivePlayers: number): Promise<void>;
+
+  getDecoderBudgetStats(): Promise<{ maxActive: number; active: number; suspended: number; playable: number; evictions: number }>;
+
   /**
    * 设置播放源
    */
-  setDataSource(playerId: number, url: string, options?: object): Promise<void>;
+  setDataSource(playerId: number, url: string, options?: DataSourceOptions): Promise<void>;
   
+  /**
+   * 获取块缓存命中统计，未开启块缓存时返回null
+   */
+  getBlockCacheStats(playerId: number): Promise<BlockCacheStats | null>;
+
+  /**
+   * 获取当前播放的QoS统计，耗时单位毫秒，未发生的阶段为-1
+   */
+  getPlaybackStats(playerId: number): Promise<PlaybackStats>;
+
+  /**
+   * 设置单个ijk选项，category取OPT_CATEGORY_*常量，需在prepareAsync之前调用
+   */
+  setOption(playerId: number, category: number, name: string, value: number | string | boolean): Promise<void>;
+
+  /**
+   * 按间隔采样ijk内部统计，通过stats事件批量发送，intervalMs为0时关闭
+   */
+  setStatsInterval(playerId: number, intervalMs: number): Promise<void>;
+
+  /**
+   * 立即读取一次ijk内部统计，播放器未准备好时返回null
+   */
+  getNativeStats(playerId: number): Promise<NativeStats | null>;
+
+  /**
+   * 预加载视频开头部分到磁盘缓存，之后同一地址的setDataSource自动使用缓存；
+   * 再次调用可更新优先级，priority越大越先下载
+   */
+  preload(url: string, options?: { bytes?: number; ms?: number; priority?: number }): Promise<void>;
+
+  /**
+   * 取消预加载，已下载的数据保留在缓存中
+   */
+  cancelPreload(url: string): Promise<void>;
+
+  /**
+   * 设置同时预加载的数量，默认2
+   */
+  setPreloadConcurrency(maxConcurrent: number): Promise<void>;
+
+  /**
+   * 清空网络视频磁盘缓存
+   */
+  clearHttpCache(): Promise<void>;
+
+  /**
+   * 同步读取播放器状态，不经过 promise，播放器不存在时返回 null；
+   * 使用同步方法，Chrome 远程调试模式下不可用
+   */
+  getPlayerState(playerId: number): PlayerState | null;
+
+  /**
+   * 一次同步读取多个播放器的状态，顺序与 playerIds 相同
+   */
+  getSnapshots(playerIds: number[]): (PlayerState | null)[];
+
   /**
    * 异步准备播放
    */
@@ -124,13 +530,76 @@ export interface IJKPlayerModule {
    * 设置音频焦点
    */
   setAudioFocus(request: boolean): Promise<void>;
+
+  /**
+   * 获取事件队列统计，dropped为溢出丢弃数，coalesced为合并覆盖数
+   */
+  getEventQueueStats(): Promise<{ queued: number; dropped: number; coalesced: number }>;
+
+  /**
+   * 获取后台释放统计，queueDepth为等待释放的播放器数，overflow为队列满时同步释放的次数
+   */
+  getReleaseStats(): Promise<ReleaseStats>;
+
+  /**
+   * 清除本机记录的硬解失败信息
+   */
+  clearDecoderCapabilities(): Promise<void>;
+
+  /**
+   * 自适应码率的当前档位和带宽估计，没有开启时返回null
+   */
+  getAbrState(playerId: number): Promise<AbrState | null>;
+
+  /**
+   * 截取当前画面，需要 Android 7.0 及以上，播放器需已绑定到视图
+   */
+  snapshot(playerId: number, options?: SnapshotOptions): Promise<SnapshotResult>;
+
+  /**
+   * 删除未指定 path 时写入缓存目录的截图
+   */
+  clearSnapshots(): Promise<void>;
+
+  /**
+   * 生成进度条预览雪碧图，不需要播放器，进度通过storyboard事件发送，全部完成后resolve
+   */
+  generateStoryboard(url: string, options?: StoryboardOptions): Promise<Storyboard>;
+
+  /**
+   * 取消生成，已生成的部分保留在磁盘上，再次生成时继续
+   */
+  cancelStoryboard(url: string): Promise<boolean>;
+
+  /**
+   * 读取已缓存的预览图，options需与生成时一致，没有时返回null
+   */
+  getStoryboard(url: string, options?: StoryboardOptions): Promise<Storyboard | null>;
+
+  clearStoryboards(): Promise<void>;
+
+  /**
+   * 无缝列表播放，下一项由隐藏的播放器提前准备，播完立即切换，playerId保持不变；
+   * 每次切换发出playlist事件，全部播完时事件带finished
+   */
+  setPlaylist(playerId: number, urls: string[], options?: PlaylistOptions): Promise<void>;
+
+  /**
+   * 切到下一项，没有下一项时返回false
+   */
+  playlistNext(playerId: number): Promise<boolean>;
+
+  /**
+   * 停止列表播放，释放隐藏的播放器，当前项继续播放
+   */
+  clearPlaylist(playerId: number): Promise<void>;
 }
 
 export class IJKPlayer extends Component<IJKPlayerProps> {
   /**
    * 设置播放源
    */
-  setDataSource(url: string, options?: object): Promise<void>;
+  setDataSource(url: string, options?: DataSourceOptions): Promise<void>;
   
   /**
    * 异步准备播放
@@ -166,6 +635,16 @@ export class IJKPlayer extends Component<IJKPlayerProps> {
    * 设置音量
    */
   setVolume(volume: number): Promise<void>;
+
+  /**
+   * 同步读取当前播放器状态，播放器未创建时返回 null
+   */
+  getPlayerState(): PlayerState | null;
+
+  /**
+   * 截取当前画面
+   */
+  snapshot(options?: SnapshotOptions): Promise<SnapshotResult>;
   
   /**
    * 设置屏幕常亮
@@ -179,3 +658,19 @@ export class IJKPlayer extends Component<IJKPlayerProps> {
 }
 
 export const IJKPlayerModule: IJKPlayerModule;
+
+export interface PlayerEvent {
+  playerId?: number;
+  /**
+   * 事件类型，如 state、error、end，释放播放器时发出 summary，内容同 PlaybackStats；
+   * 预览图生成进度为 storyboard，内容同 Storyboard，没有 playerId；
+   * 列表播放切换时为 playlist，带 index、url，出错时带 error，全部播完时带 finished
+   */
+  event: string;
+  [key: string]: any;
+}
+
+/**
+ * 监听模块级播放器事件，返回值调用remove()取消监听
+ */
+export function addPlayerEventListener(listener: (event: PlayerEvent) => void): { remove(): void };